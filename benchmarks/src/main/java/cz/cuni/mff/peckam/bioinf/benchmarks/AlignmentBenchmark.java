@@ -0,0 +1,114 @@
+/**  */
+package cz.cuni.mff.peckam.bioinf.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cz.cuni.mff.peckam.bioinf.alignments.AlignmentResult;
+import cz.cuni.mff.peckam.bioinf.alignments.AlignmentScore;
+import cz.cuni.mff.peckam.bioinf.alignments.NucleotideSequence;
+import cz.cuni.mff.peckam.bioinf.alignments.OverlapAlignmentProblem;
+import cz.cuni.mff.peckam.bioinf.superstring.GenomeAssemblyInput;
+import cz.cuni.mff.peckam.bioinf.superstring.RandomAssemblyDataGenerator;
+
+/**
+ * Alignment of a read to a consensus sequence (the full alignment with the traceback, and the score only) over a grid
+ * of the lengths of the read and the consensus. Besides the alignments per second, the number of computed cells of
+ * the DP table per second is reported.
+ *
+ * @author Martin Pecka
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector,jdk.incubator.foreign")
+public class AlignmentBenchmark
+{
+    /** Seed of the generated sequences. */
+    private static final long  SEED = 20130111L;
+
+    /** Length of the read. */
+    @Param({ "100", "400" })
+    public int                 readLength;
+
+    /** Length of the consensus sequence. */
+    @Param({ "1000", "10000", "100000" })
+    public int                 consensusLength;
+
+    /** The consensus sequence. */
+    private NucleotideSequence consensus;
+
+    /** The read, sampled from the consensus with errors. */
+    private NucleotideSequence read;
+
+    /**
+     * Generate the sequences.
+     */
+    @Setup
+    public void generate()
+    {
+        final GenomeAssemblyInput input = RandomAssemblyDataGenerator.generate(consensusLength, readLength,
+                readLength + 1, 1, 0.02, SEED);
+        consensus = input.getOriginalSequence();
+        read = input.getReads().get(0);
+    }
+
+    /**
+     * @param counters The counters of the computed cells.
+     * @return The alignment with the traceback.
+     */
+    @Benchmark
+    public AlignmentResult compute(Cells counters)
+    {
+        counters.cells += (long) consensus.length() * read.length();
+        return new OverlapAlignmentProblem(consensus, read, 1, -1, -1).compute();
+    }
+
+    /**
+     * @param counters The counters of the computed cells.
+     * @return The score of the alignment.
+     */
+    @Benchmark
+    public AlignmentScore computeScore(Cells counters)
+    {
+        counters.cells += (long) consensus.length() * read.length();
+        return new OverlapAlignmentProblem(consensus, read, 1, -1, -1).computeScore();
+    }
+
+    /**
+     * Number of computed cells of the DP tables, reported per second.
+     *
+     * @author Martin Pecka
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Cells
+    {
+        /** Number of computed cells. */
+        public long cells;
+
+        /**
+         * Reset the counter before every iteration.
+         */
+        @Setup(Level.Iteration)
+        public void reset()
+        {
+            cells = 0;
+        }
+    }
+}
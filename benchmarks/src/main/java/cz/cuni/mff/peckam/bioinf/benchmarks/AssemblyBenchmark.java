@@ -0,0 +1,109 @@
+/**  */
+package cz.cuni.mff.peckam.bioinf.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cz.cuni.mff.peckam.bioinf.alignments.NucleotideSequence;
+import cz.cuni.mff.peckam.bioinf.superstring.AlignmentCache;
+import cz.cuni.mff.peckam.bioinf.superstring.GenomeAssemblyInput;
+import cz.cuni.mff.peckam.bioinf.superstring.GenomeAssemblyStrategy;
+import cz.cuni.mff.peckam.bioinf.superstring.PriorityQueueAssemblyStrategy;
+import cz.cuni.mff.peckam.bioinf.superstring.RandomAssemblyDataGenerator;
+import cz.cuni.mff.peckam.bioinf.superstring.SimpleGenomeAssemblyStrategy;
+import cz.cuni.mff.peckam.bioinf.superstring.SuperstringFinder;
+
+/**
+ * End-to-end assembly of a generated input by {@link SuperstringFinder#assembleGenome(GenomeAssemblyInput)}, configured
+ * the same way as by {@link SuperstringFinder#main(String[])} except that the reads are aligned on the benchmark
+ * thread. Besides the assemblies per second, the number of assembled reads per second is reported.
+ *
+ * @author Martin Pecka
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector,jdk.incubator.foreign")
+public class AssemblyBenchmark
+{
+    /** Seed of the generated input. */
+    private static final long  SEED = 20130111L;
+
+    /** The assembly strategy: <code>simple</code> or <code>priority-queue</code>. */
+    @Param({ "simple", "priority-queue" })
+    public String              strategy;
+
+    /** Length of the genome. */
+    @Param({ "2000" })
+    public int                 genomeLength;
+
+    /** Number of reads. */
+    @Param({ "200" })
+    public int                 numReads;
+
+    /** The assembled input. */
+    private GenomeAssemblyInput input;
+
+    /**
+     * Generate the input.
+     */
+    @Setup(Level.Trial)
+    public void generate()
+    {
+        input = RandomAssemblyDataGenerator.generate(genomeLength, 100, 200, numReads, 0.01, SEED);
+    }
+
+    /**
+     * @param counters The counters of the assembled reads.
+     * @return The assembled genome.
+     */
+    @Benchmark
+    public NucleotideSequence assembleGenome(Reads counters)
+    {
+        final GenomeAssemblyStrategy assemblyStrategy = "priority-queue".equals(strategy)
+                ? new PriorityQueueAssemblyStrategy() : new SimpleGenomeAssemblyStrategy();
+        final SuperstringFinder finder = new SuperstringFinder(assemblyStrategy);
+        finder.setExactOverlapStage(true);
+        finder.setAlignmentCache(new AlignmentCache());
+
+        counters.reads += input.getReads().size();
+        return finder.assembleGenome(input);
+    }
+
+    /**
+     * Number of assembled reads, reported per second.
+     *
+     * @author Martin Pecka
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Reads
+    {
+        /** Number of assembled reads. */
+        public long reads;
+
+        /**
+         * Reset the counter before every iteration.
+         */
+        @Setup(Level.Iteration)
+        public void reset()
+        {
+            reads = 0;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/**  */
+package cz.cuni.mff.peckam.bioinf.benchmarks;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler (which reports the allocation rate) and writes the results in JSON (to
+ * <code>jmh-result.json</code> unless another file is given by <code>-rff</code>), so that the results of a change can
+ * be compared to a baseline.
+ *
+ * @author Martin Pecka
+ */
+public final class BenchmarkRunner
+{
+    /**
+     * No instances.
+     */
+    private BenchmarkRunner()
+    {
+    }
+
+    /**
+     * @param args The JMH command line options, e.g. a regular expression selecting the benchmarks to run.
+     * @throws CommandLineOptionException If the options are invalid.
+     * @throws RunnerException If the benchmarks fail.
+     * @throws IOException If the help can't be printed.
+     */
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException, IOException
+    {
+        final CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp()) {
+            commandLine.showHelp();
+            return;
+        }
+        if (commandLine.shouldList()) {
+            new Runner(commandLine).list();
+            return;
+        }
+
+        final ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine).addProfiler(GCProfiler.class);
+        if (!commandLine.getResultFormat().hasValue())
+            options.resultFormat(ResultFormatType.JSON);
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,138 @@
+/**  */
+package cz.cuni.mff.peckam.bioinf.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cz.cuni.mff.peckam.bioinf.alignments.NucleotideSequence;
+import cz.cuni.mff.peckam.bioinf.superstring.GenomeAssemblyInput;
+import cz.cuni.mff.peckam.bioinf.superstring.RandomAssemblyDataGenerator;
+
+/**
+ * Parsing of the input files by {@link GenomeAssemblyInput#readFromFile(File)} in all the supported formats. Besides
+ * the parsed files per second, the number of parsed reads per second is reported.
+ *
+ * @author Martin Pecka
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector,jdk.incubator.foreign")
+public class InputParsingBenchmark
+{
+    /** Seed of the generated input. */
+    private static final long SEED = 20130111L;
+
+    /** Format of the file: <code>plain</code> (the original sequence and one read per line), fasta or fastq. */
+    @Param({ "plain", "fasta", "fastq" })
+    public String             format;
+
+    /** Number of reads in the file. */
+    @Param({ "100000" })
+    public int                numReads;
+
+    /** The parsed file. */
+    private File              file;
+
+    /**
+     * Generate the input and write it to a temporary file.
+     *
+     * @throws IOException If the file can't be written.
+     */
+    @Setup(Level.Trial)
+    public void writeInput() throws IOException
+    {
+        final GenomeAssemblyInput input = RandomAssemblyDataGenerator.generate(100000, 100, 250, numReads, 0.01, SEED);
+        file = File.createTempFile("superstring-finder-", "." + format);
+
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+            if ("plain".equals(format)) {
+                writer.write(input.getOriginalSequence().toString());
+                writer.write("\n");
+            }
+
+            int r = 0;
+            for (NucleotideSequence read : input.getReads()) {
+                final String bases = read.toString();
+                if ("fasta".equals(format)) {
+                    writer.write(">read" + r + "\n");
+                    // the sequences of FASTA files are usually wrapped
+                    for (int i = 0; i < bases.length(); i += 80)
+                        writer.write(bases.substring(i, Math.min(bases.length(), i + 80)) + "\n");
+                } else if ("fastq".equals(format)) {
+                    writer.write("@read" + r + "\n" + bases + "\n+\n");
+                    for (int i = 0; i < bases.length(); i++)
+                        writer.write('I');
+                    writer.write("\n");
+                } else {
+                    writer.write(bases + "\n");
+                }
+                r++;
+            }
+        }
+    }
+
+    /**
+     * Delete the temporary file.
+     */
+    @TearDown(Level.Trial)
+    public void deleteInput()
+    {
+        file.delete();
+    }
+
+    /**
+     * @param counters The counters of the parsed reads.
+     * @return The parsed input.
+     * @throws IOException If the file can't be read.
+     */
+    @Benchmark
+    public GenomeAssemblyInput readFromFile(Reads counters) throws IOException
+    {
+        final GenomeAssemblyInput input = GenomeAssemblyInput.readFromFile(file);
+        counters.reads += input.getReads().size();
+        return input;
+    }
+
+    /**
+     * Number of parsed reads, reported per second.
+     *
+     * @author Martin Pecka
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Reads
+    {
+        /** Number of parsed reads. */
+        public long reads;
+
+        /**
+         * Reset the counter before every iteration.
+         */
+        @Setup(Level.Iteration)
+        public void reset()
+        {
+            reads = 0;
+        }
+    }
+}
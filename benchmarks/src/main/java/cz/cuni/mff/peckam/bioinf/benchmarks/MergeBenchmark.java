@@ -0,0 +1,96 @@
+/**  */
+package cz.cuni.mff.peckam.bioinf.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cz.cuni.mff.peckam.bioinf.alignments.AlignmentResult;
+import cz.cuni.mff.peckam.bioinf.alignments.NucleotideSequence;
+import cz.cuni.mff.peckam.bioinf.alignments.OverlapAlignmentProblem;
+import cz.cuni.mff.peckam.bioinf.superstring.RandomAssemblyDataGenerator;
+
+/**
+ * Merging of a read overlapping one end of the consensus sequence to the consensus by
+ * {@link AlignmentResult#mergeSeq2ToSeq1()}.
+ * <p>
+ * The merge alters the consensus, so every invocation merges to a fresh copy aligned before the invocation (outside of
+ * the measured time).
+ *
+ * @author Martin Pecka
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector,jdk.incubator.foreign")
+public class MergeBenchmark
+{
+    /** Seed of the generated sequences. */
+    private static final long  SEED = 20130111L;
+
+    /** Length of the read, half of which overlaps the consensus. */
+    @Param({ "100", "400" })
+    public int                 readLength;
+
+    /** Length of the consensus sequence. */
+    @Param({ "1000", "10000" })
+    public int                 consensusLength;
+
+    /** True if the read overlaps the start of the consensus, false for the end. */
+    @Param({ "false", "true" })
+    public boolean             prepend;
+
+    /** The consensus sequence. */
+    private NucleotideSequence consensus;
+
+    /** The read. */
+    private NucleotideSequence read;
+
+    /** The alignment of the read to a copy of the consensus. */
+    private AlignmentResult    alignment;
+
+    /**
+     * Generate the sequences.
+     */
+    @Setup(Level.Trial)
+    public void generate()
+    {
+        final NucleotideSequence genome = RandomAssemblyDataGenerator.generate(consensusLength + readLength / 2,
+                readLength, readLength + 1, 0, 0, SEED).getOriginalSequence();
+        final int overlapStart = prepend ? 0 : consensusLength - readLength / 2;
+        final int consensusStart = prepend ? readLength / 2 : 0;
+        consensus = new NucleotideSequence(genome.subSequence(consensusStart, consensusStart + consensusLength));
+        read = new NucleotideSequence(genome.subSequence(overlapStart, overlapStart + readLength));
+    }
+
+    /**
+     * Align the read to a fresh copy of the consensus.
+     */
+    @Setup(Level.Invocation)
+    public void align()
+    {
+        alignment = new OverlapAlignmentProblem(new NucleotideSequence(consensus), read, 1, -1, -1).compute();
+    }
+
+    /**
+     * @return The merged sequence.
+     */
+    @Benchmark
+    public NucleotideSequence mergeSeq2ToSeq1()
+    {
+        return alignment.mergeSeq2ToSeq1();
+    }
+}
@@ -0,0 +1,63 @@
+/**  */
+package cz.cuni.mff.peckam.bioinf.alignments;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight recorder event of a computed alignment (see {@link DynamicProgrammingProblem#compute()} and
+ * {@link AlignmentProblem#computeScore()}).
+ * <p>
+ * Most alignments of the reads take microseconds, so by default only the ones longer than the threshold are recorded.
+ * The threshold can be lowered by the JFR settings (eg.
+ * <code>jcmd &lt;pid&gt; JFR.start "+cz.cuni.mff.peckam.bioinf.Alignment#threshold=0 ms"</code>).
+ *
+ * @author Martin Pecka
+ */
+@Name("cz.cuni.mff.peckam.bioinf.Alignment")
+@Label("Alignment")
+@Category({ "Superstring Finder", "Alignments" })
+@Description("Computation of an alignment of two sequences")
+@StackTrace(false)
+@Threshold("1 ms")
+final class AlignmentEvent extends Event
+{
+    /** Kernel of the whole table computed in one thread. */
+    static final String KERNEL_TABLE        = "table";
+    /** Kernel of the table computed by tiles in parallel. */
+    static final String KERNEL_WAVEFRONT    = "wavefront";
+    /** Kernel of the score and the traceback computed in linear space. */
+    static final String KERNEL_LINEAR_SPACE = "linear-space";
+    /** Kernel of the score computed row by row. */
+    static final String KERNEL_SCALAR       = "scalar";
+    /** Kernel of the score computed in a band of the table. */
+    static final String KERNEL_BANDED       = "banded";
+    /** Kernel of the score computed by the striped SIMD algorithm. */
+    static final String KERNEL_STRIPED      = "striped";
+
+    /** Length of the first sequence. */
+    @Label("First Sequence Length")
+    int                 length1;
+
+    /** Length of the second sequence. */
+    @Label("Second Sequence Length")
+    int                 length2;
+
+    /** Number of computed cells of the DP table. */
+    @Label("Cells")
+    @Description("Number of computed cells of the DP table")
+    long                cells;
+
+    /** The kernel which computed the alignment. */
+    @Label("Kernel")
+    String              kernel;
+
+    /** True if the DP table was stored off-heap. */
+    @Label("Off-Heap")
+    boolean             offHeap;
+}
@@ -12,11 +12,30 @@ import java.util.List;
  */
 public abstract class AlignmentProblem extends DynamicProgrammingProblem<Integer, AlignmentResult>
 {
+    /** The default value of {@link #getLinearSpaceThreshold()}. */
+    public static final long                 DEFAULT_LINEAR_SPACE_THRESHOLD = 1L << 24;
+
+    /** The default value of {@link #getOffHeapLinearSpaceThreshold()}. */
+    public static final long                 DEFAULT_OFF_HEAP_LINEAR_SPACE_THRESHOLD = 1L << 27;
+
+    /** Number of DP table items above which the alignments with tables on the heap are computed in linear space. */
+    private static volatile long             linearSpaceThreshold           = DEFAULT_LINEAR_SPACE_THRESHOLD;
+
+    /** Number of DP table items above which the alignments with off-heap tables are computed in linear space. */
+    private static volatile long             offHeapLinearSpaceThreshold    = DEFAULT_OFF_HEAP_LINEAR_SPACE_THRESHOLD;
+
+    /** True if the Vector API module has been added to the running JVM. */
+    private static final boolean             VECTOR_API_AVAILABLE           = ModuleLayer.boot()
+                                                                                    .findModule("jdk.incubator.vector")
+                                                                                    .isPresent();
+
+    /** True if the scores should be computed by the vectorized kernels (if they are available). */
+    private static volatile boolean          vectorizedScoring              = true;
 
     /** The first sequence. */
-    protected final List<Character>          seq1;
+    protected final NucleotideSequence       seq1;
     /** The second sequence. */
-    protected final List<Character>          seq2;
+    protected final NucleotideSequence       seq2;
     /** The scoring matrix. */
     protected final ScoringMatrix<Character> scoringMatrix;
     
@@ -25,22 +44,185 @@ public abstract class AlignmentProblem extends DynamicProgrammingProblem<Integer
      * @param seq2 The second sequence.
      * @param scoringMatrix The scoring matrix.
      */
-    public AlignmentProblem(List<Character> seq1, List<Character> seq2, ScoringMatrix<Character> scoringMatrix)
+    public AlignmentProblem(NucleotideSequence seq1, NucleotideSequence seq2, ScoringMatrix<Character> scoringMatrix)
     {
         // +1 for the zeroth initialization row and column
-        super(seq1.size() + 1, seq2.size() + 1);
+        super(seq1.length() + 1, seq2.length() + 1);
 
         this.seq1 = seq1;
         this.seq2 = seq2;
         this.scoringMatrix = scoringMatrix;
     }
 
+    /**
+     * Compute only the score of the alignment and the coordinates of its start and end, without building the DP table
+     * and the traceback.
+     * <p>
+     * The returned score and coordinates are the same as those of the result of {@link #compute()}.
+     * 
+     * @return The score of the alignment.
+     */
+    public abstract AlignmentScore computeScore();
+
+    /**
+     * @return Number of DP table items above which {@link #compute()} finds the alignment in linear space (the score by
+     *         {@link #computeScore()} and the traceback by {@link LinearSpaceAlignment}) instead of filling the tables
+     *         on the heap. Applies to the tables which aren't stored off-heap (see
+     *         {@link DynamicProgrammingProblem#setOffHeapThreshold(long)}).
+     */
+    public static long getLinearSpaceThreshold()
+    {
+        return linearSpaceThreshold;
+    }
+
+    /**
+     * @param cells Number of DP table items above which {@link #compute()} finds the alignment in linear space (the
+     *            score by {@link #computeScore()} and the traceback by {@link LinearSpaceAlignment}) instead of filling
+     *            the tables on the heap. Applies to the tables which aren't stored off-heap (see
+     *            {@link DynamicProgrammingProblem#setOffHeapThreshold(long)}).
+     */
+    public static void setLinearSpaceThreshold(long cells)
+    {
+        linearSpaceThreshold = cells;
+    }
+
+    /**
+     * @return Number of DP table items above which {@link #compute()} finds the alignment in linear space instead of
+     *         filling the off-heap tables. Applies to the tables with more items than
+     *         {@link DynamicProgrammingProblem#getOffHeapThreshold()} if the off-heap tables are available.
+     */
+    public static long getOffHeapLinearSpaceThreshold()
+    {
+        return offHeapLinearSpaceThreshold;
+    }
+
+    /**
+     * Set the size of the largest off-heap tables. The tables need about 4.25 bytes of native memory per item (an int
+     * value and 2 bits of the traceback direction), so the default of 128M items takes about 544 MB.
+     * <p>
+     * The tables with at most {@link DynamicProgrammingProblem#getOffHeapThreshold()} items are filled on the heap,
+     * the larger tables with at most this number of items are filled off-heap, and the alignments with even larger
+     * tables are computed in linear space. Without the off-heap tables, {@link #getLinearSpaceThreshold()} applies to
+     * all the tables.
+     * 
+     * @param cells Number of DP table items above which {@link #compute()} finds the alignment in linear space instead
+     *            of filling the off-heap tables.
+     */
+    public static void setOffHeapLinearSpaceThreshold(long cells)
+    {
+        offHeapLinearSpaceThreshold = cells;
+    }
+
+    /**
+     * The vectorized kernels need the <code>jdk.incubator.vector</code> module, which has to be added to the JVM by
+     * <code>--add-modules jdk.incubator.vector</code>.
+     * 
+     * @return True if the vectorized kernels can be used in this JVM.
+     */
+    public static boolean isVectorizedScoringAvailable()
+    {
+        return VECTOR_API_AVAILABLE;
+    }
+
+    /**
+     * @return True if {@link #computeScore()} uses the vectorized kernels where the problem supports them.
+     */
+    public static boolean isVectorizedScoring()
+    {
+        return vectorizedScoring && VECTOR_API_AVAILABLE;
+    }
+
+    /**
+     * @param enabled True if {@link #computeScore()} should use the vectorized kernels where the problem supports them
+     *            (and the Vector API is available, see {@link #isVectorizedScoringAvailable()}).
+     */
+    public static void setVectorizedScoring(boolean enabled)
+    {
+        vectorizedScoring = enabled;
+    }
+
+    @Override
+    protected boolean shouldComputeInLinearSpace()
+    {
+        final long cells = ((long) width) * height;
+        return cells > (shouldStoreOffHeap(cells) ? offHeapLinearSpaceThreshold : linearSpaceThreshold);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Assumes that the path between the start and end of the alignment is a global alignment of the corresponding parts
+     * of the sequences with linear gap penalties.
+     */
+    @Override
+    protected AlignmentResult computeInLinearSpace()
+    {
+        final AlignmentScore score = computeScore();
+
+        final LinearSpaceAlignment alignment = new LinearSpaceAlignment(seq1, seq2, scoringMatrix);
+        final List<Tuple<Integer>> traceback = alignment.path(score.getStart1(), score.getStart2(), score.getEnd1(),
+                score.getEnd2());
+
+        // the same as in traceback(), we don't want to have the zeroth column and row in traceback
+        if (traceback.get(0).elem1 == 0 && traceback.get(0).elem2 == 0)
+            traceback.remove(0);
+
+        return new AlignmentResult(seq1, seq2, score.getScore(), traceback);
+    }
+
     @Override
     protected Integer[][] createValuesArray(int width, int height)
     {
         return new Integer[width][height];
     }
 
+    @Override
+    DynamicProgrammingTable<Integer> createHeapTable(int width, int height, long[] traceback,
+            AlignmentWorkspace workspace)
+    {
+        final int cells = Math.multiplyExact(width, height);
+        final int[] values = (workspace != null) ? workspace.getInts(AlignmentWorkspace.TABLE_VALUES, cells)
+                : new int[cells];
+        return new IntHeapTable(values, width, traceback);
+    }
+
+    @Override
+    DynamicProgrammingTable<Integer> createOffHeapTable(int width, int height)
+    {
+        return new OffHeapIntTable(width, height);
+    }
+
+    /**
+     * Return the value of the given item without boxing it if the table stores ints.
+     * 
+     * @param i The first coordinate of the item.
+     * @param j The second coordinate of the item.
+     * @return The value. Undefined if the item hasn't been computed yet.
+     */
+    protected final int getIntItem(int i, int j)
+    {
+        final DynamicProgrammingTable<Integer> table = getTable();
+        if (table instanceof IntDynamicProgrammingTable)
+            return ((IntDynamicProgrammingTable) table).getInt(i, j);
+        return table.getValue(i, j);
+    }
+
+    /**
+     * Save the value of the given item without boxing it if the table stores ints.
+     * 
+     * @param i The first coordinate of the item.
+     * @param j The second coordinate of the item.
+     * @param value The value.
+     */
+    protected final void setIntItem(int i, int j, int value)
+    {
+        final DynamicProgrammingTable<Integer> table = getTable();
+        if (table instanceof IntDynamicProgrammingTable)
+            ((IntDynamicProgrammingTable) table).setInt(i, j, value);
+        else
+            table.setValue(i, j, value);
+    }
+
     @Override
     protected Tuple<Integer> getCoordsAfterInit()
     {
@@ -51,7 +233,7 @@ public abstract class AlignmentProblem extends DynamicProgrammingProblem<Integer
     protected AlignmentResult findResult()
     {
         final Tuple<Integer> resultCoords = getTracebackLastCoords();
-        final int score = valuesTable[resultCoords.elem1][resultCoords.elem2];
+        final int score = getIntItem(resultCoords.elem1, resultCoords.elem2);
         final List<Tuple<Integer>> traceback = traceback(resultCoords);
 
         return new AlignmentResult(seq1, seq2, score, traceback);
@@ -1,8 +1,7 @@
 /**  */
 package cz.cuni.mff.peckam.bioinf.alignments;
 
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -13,10 +12,10 @@ import java.util.List;
 public class AlignmentResult
 {
     /** The first sequence. */
-    private final List<Character>      seq1;
+    private final NucleotideSequence   seq1;
 
     /** The second sequence. */
-    private final List<Character>      seq2;
+    private final NucleotideSequence   seq2;
 
     /** Score of the alignment. */
     private final int                  score;
@@ -34,7 +33,7 @@ public class AlignmentResult
      * @param traceback The traceback of the alignment (path from the start of the alignment to its end through the
      *            values table).
      */
-    public AlignmentResult(List<Character> seq1, List<Character> seq2, int score, List<Tuple<Integer>> traceback)
+    public AlignmentResult(NucleotideSequence seq1, NucleotideSequence seq2, int score, List<Tuple<Integer>> traceback)
     {
         this.seq1 = seq1;
         this.seq2 = seq2;
@@ -45,7 +44,7 @@ public class AlignmentResult
     /**
      * @return The first sequence.
      */
-    public List<Character> getSeq1()
+    public NucleotideSequence getSeq1()
     {
         return seq1;
     }
@@ -53,11 +52,20 @@ public class AlignmentResult
     /**
      * @return The second sequence.
      */
-    public List<Character> getSeq2()
+    public NucleotideSequence getSeq2()
     {
         return seq2;
     }
 
+    /**
+     * @return The traceback of the alignment (path from the start of the alignment to its end through the values
+     *         table).
+     */
+    List<Tuple<Integer>> getTraceback()
+    {
+        return Collections.unmodifiableList(traceback);
+    }
+
     /**
      * @return Score of the alignment.
      */
@@ -77,14 +85,30 @@ public class AlignmentResult
         final int end1 = traceback.get(traceback.size()-1).elem1;
         final int end2 = traceback.get(traceback.size()-1).elem2;
         
-        if (end1 < seq1.size() - 1 && start1 > 0) {
+        return doesSeq1ContainSeq2(start1, start2, end1, end2, seq1.length(), seq2.length());
+    }
+
+    /**
+     * Decide whether seq1 contains seq2 only from the start and end coordinates of the alignment.
+     * 
+     * @param start1 Start of the alignment in the first sequence.
+     * @param start2 Start of the alignment in the second sequence.
+     * @param end1 End of the alignment in the first sequence.
+     * @param end2 End of the alignment in the second sequence.
+     * @param length1 Length of the first sequence.
+     * @param length2 Length of the second sequence.
+     * @return True if seq1 contains seq2 as its part (with indels allowed).
+     */
+    static boolean doesSeq1ContainSeq2(int start1, int start2, int end1, int end2, int length1, int length2)
+    {
+        if (end1 < length1 - 1 && start1 > 0) {
             return true;
         } else if (start1 > 0) {
-            return end2 == seq2.size() - 1;
-        } else if (end1 < seq1.size() - 1) {
+            return end2 == length2 - 1;
+        } else if (end1 < length1 - 1) {
             return start2 == 0;
         } else {
-            return start2 == 0 && end2 == seq2.size() - 1;
+            return start2 == 0 && end2 == length2 - 1;
         }
     }
     
@@ -92,12 +116,12 @@ public class AlignmentResult
      * Merge seq2 to seq1 according to the alignment. If <code>{@link #doesSeq1ContainSeq2()} == true</code>, this
      * method does nothing.
      * <p>
-     * Beware! This function alters the list provided to the result constructor, so subsequent calls of other methods on
+     * Beware! This function alters the sequence provided to the result constructor, so subsequent calls of other methods on
      * this object would not be a good idea.
      * 
      * @return The first sequence with the second one merged.
      */
-    public List<Character> mergeSeq2ToSeq1()
+    public NucleotideSequence mergeSeq2ToSeq1()
     {
         // nothing to append
         if (doesSeq1ContainSeq2())
@@ -105,30 +129,30 @@ public class AlignmentResult
 
         final ResultWalkingEventHandler handler = new ResultWalkingEventHandler() {
             /** The characters of seq2 to prepend. */
-            private List<Character> toPrepend = new LinkedList<>();
+            private NucleotideSequence toPrepend = new NucleotideSequence();
             /** The characters of seq2 to append. */
-            private List<Character> toAppend = new LinkedList<>();
+            private NucleotideSequence toAppend = new NucleotideSequence();
 
             @Override
             public void afterAlignment(Character seq1Char, Character seq2Char)
             {
                 if (seq2Char != null && seq1Char == null)
-                    toAppend.add(seq2Char);
+                    toAppend.append(seq2Char);
             }
 
             @Override
             public void beforeAlignment(Character seq1Char, Character seq2Char)
             {
                 if (seq2Char != null && seq1Char == null)
-                    toPrepend.add(seq2Char);
+                    toPrepend.append(seq2Char);
             }
 
             @SuppressWarnings("synthetic-access")
             @Override
             public void completed()
             {
-                seq1.addAll(0, toPrepend);
-                seq1.addAll(toAppend);
+                seq1.prepend(toPrepend);
+                seq1.append(toAppend);
             }
 
             @Override
@@ -158,12 +182,12 @@ public class AlignmentResult
         final int start2 = traceback.get(0).elem2;
         final int maxStart = Math.max(start1, start2);
 
-        final Iterator<Character> seq1it = seq1.iterator();
-        final Iterator<Character> seq2it = seq2.iterator();
+        // positions of the next characters to walk in the sequences
+        int pos1 = 0, pos2 = 0;
 
         for (int i = 0; i < maxStart; i++) {
-            final Character seq1Char = (i < maxStart - start1) ? null : seq1it.next();
-            final Character seq2Char = (i < maxStart - start2) ? null : seq2it.next();
+            final Character seq1Char = (i < maxStart - start1) ? null : seq1.charAt(pos1++);
+            final Character seq2Char = (i < maxStart - start2) ? null : seq2.charAt(pos2++);
             handler.beforeAlignment(seq1Char, seq2Char);
         }
 
@@ -177,17 +201,18 @@ public class AlignmentResult
                 continue;
             }
 
-            final Character seq1Char = (coords.elem1 == previous.elem1) ? null : seq1it.next();
-            final Character seq2Char = (coords.elem2 == previous.elem2) ? null : seq2it.next();
+            // the coordinates are boxed, so they have to be compared by equals()
+            final Character seq1Char = coords.elem1.equals(previous.elem1) ? null : seq1.charAt(pos1++);
+            final Character seq2Char = coords.elem2.equals(previous.elem2) ? null : seq2.charAt(pos2++);
 
             handler.inAlignment(seq1Char, seq2Char);
 
             previous = coords;
         }
 
-        while (seq1it.hasNext() || seq2it.hasNext()) {
-            final Character seq1Char = seq1it.hasNext() ? seq1it.next() : null;
-            final Character seq2Char = seq2it.hasNext() ? seq2it.next() : null;
+        while (pos1 < seq1.length() || pos2 < seq2.length()) {
+            final Character seq1Char = pos1 < seq1.length() ? seq1.charAt(pos1++) : null;
+            final Character seq2Char = pos2 < seq2.length() ? seq2.charAt(pos2++) : null;
 
             handler.afterAlignment(seq1Char, seq2Char);
         }
@@ -0,0 +1,105 @@
+/**  */
+package cz.cuni.mff.peckam.bioinf.alignments;
+
+/**
+ * The score of aligning two sequences together with the coordinates of the start and end of the alignment, but without
+ * the traceback itself.
+ * <p>
+ * The coordinates are coordinates in the DP table (the zeroth row and column are the initialization ones), the same as
+ * the first and last item of {@link AlignmentResult}'s traceback.
+ *
+ * @author Martin Pecka
+ */
+public class AlignmentScore
+{
+    /** Score of the alignment. */
+    private final int score;
+    /** Start of the alignment in the first sequence. */
+    private final int start1;
+    /** Start of the alignment in the second sequence. */
+    private final int start2;
+    /** End of the alignment in the first sequence. */
+    private final int end1;
+    /** End of the alignment in the second sequence. */
+    private final int end2;
+    /** Length of the first sequence. */
+    private final int length1;
+    /** Length of the second sequence. */
+    private final int length2;
+
+    /**
+     * @param score Score of the alignment.
+     * @param start1 Start of the alignment in the first sequence.
+     * @param start2 Start of the alignment in the second sequence.
+     * @param end1 End of the alignment in the first sequence.
+     * @param end2 End of the alignment in the second sequence.
+     * @param length1 Length of the first sequence.
+     * @param length2 Length of the second sequence.
+     */
+    public AlignmentScore(int score, int start1, int start2, int end1, int end2, int length1, int length2)
+    {
+        this.score = score;
+        this.start1 = start1;
+        this.start2 = start2;
+        this.end1 = end1;
+        this.end2 = end2;
+        this.length1 = length1;
+        this.length2 = length2;
+    }
+
+    /**
+     * @return Score of the alignment.
+     */
+    public int getScore()
+    {
+        return score;
+    }
+
+    /**
+     * @return Start of the alignment in the first sequence.
+     */
+    public int getStart1()
+    {
+        return start1;
+    }
+
+    /**
+     * @return Start of the alignment in the second sequence.
+     */
+    public int getStart2()
+    {
+        return start2;
+    }
+
+    /**
+     * @return End of the alignment in the first sequence.
+     */
+    public int getEnd1()
+    {
+        return end1;
+    }
+
+    /**
+     * @return End of the alignment in the second sequence.
+     */
+    public int getEnd2()
+    {
+        return end2;
+    }
+
+    /**
+     * @return True if seq1 contains seq2 as its part (with indels allowed).
+     *
+     * @see AlignmentResult#doesSeq1ContainSeq2()
+     */
+    public boolean doesSeq1ContainSeq2()
+    {
+        return AlignmentResult.doesSeq1ContainSeq2(start1, start2, end1, end2, length1, length2);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Score: " + score + ", <" + start1 + "; " + start2 + "> - <" + end1 + "; " + end2 + ">";
+    }
+}
@@ -0,0 +1,215 @@
+/**  */
+package cz.cuni.mff.peckam.bioinf.alignments;
+
+/**
+ * Per-thread set of grow-only buffers which the alignments borrow for their DP state, so that aligning many reads
+ * doesn't allocate new rows and tables for every alignment.
+ * <p>
+ * Every buffer is identified by a slot, and an alignment only uses the slots which no alignment nested in it uses. A
+ * borrowed buffer is at least as long as requested, its content is undefined, and it is only valid until the same
+ * slot is borrowed again on the same thread. Buffers longer than {@link #MAX_RETAINED_LENGTH} are allocated for the
+ * single use and not retained, so that an occasional huge alignment doesn't pin its memory to the thread.
+ *
+ * @author Martin Pecka
+ */
+public final class AlignmentWorkspace
+{
+    /** Buffers with more items are not retained by the workspace. */
+    public static final int MAX_RETAINED_LENGTH = 1 << 22;
+
+    /** Slot of the previous row of the scores. */
+    static final int PREVIOUS_ROW = 0;
+    /** Slot of the current row of the scores. */
+    static final int CURRENT_ROW = 1;
+    /** Slot of the encoded starts of the previous row. */
+    static final int PREVIOUS_STARTS = 2;
+    /** Slot of the encoded starts of the current row. */
+    static final int CURRENT_STARTS = 3;
+    /** Slot of the scores of the paths from the start item (see {@link LinearSpaceAlignment}). */
+    static final int FORWARD_ROW = 4;
+    /** Slot of the scores of the paths to the end item (see {@link LinearSpaceAlignment}). */
+    static final int BACKWARD_ROW = 5;
+    /** Slot of the values of the small tables (see {@link LinearSpaceAlignment}). */
+    static final int BASE_CASE_VALUES = 6;
+    /** Slot of the votes for the diagonals (see {@link BandedOverlapAlignmentProblem}). */
+    static final int DIAGONAL_VOTES = 7;
+    /** Slot of the values of the table (see {@link AlignmentProblem}). */
+    static final int TABLE_VALUES = 8;
+    /** First slot of the striped query profiles of the symbols a, c, g, t (see {@link StripedOverlapAlignment}). */
+    static final int PROFILES = 9;
+    /** Number of the int slots. */
+    private static final int INT_SLOTS = PROFILES + NucleotideSequence.ESCAPE_OFFSET;
+
+    /** Slot of the traceback table (see {@link DynamicProgrammingProblem}). */
+    static final int TRACEBACK_TABLE = 0;
+    /** Slot of the k-mers of the second sequence (see {@link BandedOverlapAlignmentProblem}). */
+    static final int KMERS = 1;
+    /** Slot of the vertical differences of the column (see {@link BitParallelMatcher}). */
+    static final int POSITIVE_DIFFERENCES = 2;
+    /** Slot of the vertical differences of the column (see {@link BitParallelMatcher}). */
+    static final int NEGATIVE_DIFFERENCES = 3;
+    /** Number of the long slots. */
+    private static final int LONG_SLOTS = 4;
+
+    /** Slot of the characters of the first sequence. */
+    static final int SEQUENCE_CHARS = 0;
+    /** Number of the char slots. */
+    private static final int CHAR_SLOTS = 1;
+
+    /** Slot of the traceback directions of the small tables (see {@link LinearSpaceAlignment}). */
+    static final int BASE_CASE_DIRECTIONS = 0;
+    /** Number of the byte slots. */
+    private static final int BYTE_SLOTS = 1;
+
+    /** The workspaces of the threads. */
+    private static final ThreadLocal<AlignmentWorkspace> WORKSPACES = new ThreadLocal<AlignmentWorkspace>() {
+        @Override
+        protected AlignmentWorkspace initialValue()
+        {
+            return new AlignmentWorkspace();
+        }
+    };
+
+    /** The int buffers. */
+    private final int[][] ints = new int[INT_SLOTS][];
+
+    /** The long buffers. */
+    private final long[][] longs = new long[LONG_SLOTS][];
+
+    /** The char buffers. */
+    private final char[][] chars = new char[CHAR_SLOTS][];
+
+    /** The byte buffers. */
+    private final byte[][] bytes = new byte[BYTE_SLOTS][];
+
+    /**
+     * Only {@link #get()} creates the workspaces.
+     */
+    private AlignmentWorkspace()
+    {
+    }
+
+    /**
+     * @return The workspace of the current thread.
+     */
+    public static AlignmentWorkspace get()
+    {
+        return WORKSPACES.get();
+    }
+
+    /**
+     * Borrow an int buffer.
+     *
+     * @param slot The slot of the buffer.
+     * @param length The minimum length of the buffer.
+     * @return The buffer with undefined content.
+     */
+    int[] getInts(int slot, int length)
+    {
+        int[] result = ints[slot];
+        if (result == null || result.length < length) {
+            result = new int[grow(result == null ? 0 : result.length, length)];
+            if (result.length <= MAX_RETAINED_LENGTH)
+                ints[slot] = result;
+        }
+        return result;
+    }
+
+    /**
+     * Borrow a long buffer.
+     *
+     * @param slot The slot of the buffer.
+     * @param length The minimum length of the buffer.
+     * @return The buffer with undefined content.
+     */
+    long[] getLongs(int slot, int length)
+    {
+        long[] result = longs[slot];
+        if (result == null || result.length < length) {
+            result = new long[grow(result == null ? 0 : result.length, length)];
+            if (result.length <= MAX_RETAINED_LENGTH)
+                longs[slot] = result;
+        }
+        return result;
+    }
+
+    /**
+     * Borrow a char buffer.
+     *
+     * @param slot The slot of the buffer.
+     * @param length The minimum length of the buffer.
+     * @return The buffer with undefined content.
+     */
+    char[] getChars(int slot, int length)
+    {
+        char[] result = chars[slot];
+        if (result == null || result.length < length) {
+            result = new char[grow(result == null ? 0 : result.length, length)];
+            if (result.length <= MAX_RETAINED_LENGTH)
+                chars[slot] = result;
+        }
+        return result;
+    }
+
+    /**
+     * Borrow a byte buffer.
+     *
+     * @param slot The slot of the buffer.
+     * @param length The minimum length of the buffer.
+     * @return The buffer with undefined content.
+     */
+    byte[] getBytes(int slot, int length)
+    {
+        byte[] result = bytes[slot];
+        if (result == null || result.length < length) {
+            result = new byte[grow(result == null ? 0 : result.length, length)];
+            if (result.length <= MAX_RETAINED_LENGTH)
+                bytes[slot] = result;
+        }
+        return result;
+    }
+
+    /**
+     * @return Number of bytes of the buffers retained by the workspace.
+     */
+    public long getRetainedBytes()
+    {
+        long result = 0;
+        for (int[] buffer : ints)
+            result += (buffer != null) ? 4L * buffer.length : 0;
+        for (long[] buffer : longs)
+            result += (buffer != null) ? 8L * buffer.length : 0;
+        for (char[] buffer : chars)
+            result += (buffer != null) ? 2L * buffer.length : 0;
+        for (byte[] buffer : bytes)
+            result += (buffer != null) ? buffer.length : 0;
+        return result;
+    }
+
+    /**
+     * Release all the retained buffers (eg. after a thread has aligned unusually long sequences).
+     */
+    public void clear()
+    {
+        for (int s = 0; s < INT_SLOTS; s++)
+            ints[s] = null;
+        for (int s = 0; s < LONG_SLOTS; s++)
+            longs[s] = null;
+        for (int s = 0; s < CHAR_SLOTS; s++)
+            chars[s] = null;
+        for (int s = 0; s < BYTE_SLOTS; s++)
+            bytes[s] = null;
+    }
+
+    /**
+     * @param current The current length of a buffer.
+     * @param required The required length of the buffer.
+     * @return The new length of the buffer, at least the required one and growing geometrically (but not to more than
+     *         {@link #MAX_RETAINED_LENGTH} unless required).
+     */
+    private static int grow(int current, int required)
+    {
+        final long grown = Math.min(MAX_RETAINED_LENGTH, current + (current >> 1));
+        return (int) Math.max(required, grown);
+    }
+}
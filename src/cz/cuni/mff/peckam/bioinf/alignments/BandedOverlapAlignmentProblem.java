@@ -0,0 +1,192 @@
+/**  */
+package cz.cuni.mff.peckam.bioinf.alignments;
+
+import java.util.Arrays;
+
+/**
+ * Overlap sequence alignment computed only in a band around the diagonal on which the sequences share most k-mers.
+ * <p>
+ * The diagonal <code>d</code> is the difference <code>i - j</code> of the DP table coordinates, and only the items
+ * with <code>|i - j - d| &lt;= bandWidth</code> are computed. If the sequences share no k-mer, the whole table is
+ * computed as in {@link OverlapAlignmentProblem}.
+ *
+ * @author Martin Pecka
+ */
+public class BandedOverlapAlignmentProblem extends OverlapAlignmentProblem
+{
+    /** The maximum supported k-mer length (so that a k-mer and its position fit in a long). */
+    public static final int MAX_SEED_LENGTH = 16;
+
+    /** The diagonal in the center of the band. Only valid if {@link #seedFound} is true. */
+    private final int       diagonal;
+
+    /** The band spans this number of diagonals on either side of {@link #diagonal}. */
+    private final int       bandWidth;
+
+    /** True if the sequences share at least one k-mer. */
+    private final boolean   seedFound;
+
+    /**
+     * Find the best overlap alignment of the sequences in a band around the diagonal on which they share most k-mers.
+     *
+     * @param seq1 The first sequence.
+     * @param seq2 The second sequence.
+     * @param match The bonus for matching compounds.
+     * @param mismatch Penalty for mismatch compounds. Negative value.
+     * @param gap Penalty for gap. Negative value.
+     * @param seedLength Length of the k-mers used to find the diagonal (1 to {@link #MAX_SEED_LENGTH}).
+     * @param bandWidth The number of diagonals on either side of the found one that are computed.
+     */
+    public BandedOverlapAlignmentProblem(NucleotideSequence seq1, NucleotideSequence seq2, int match, int mismatch,
+            int gap, int seedLength, int bandWidth)
+    {
+        super(seq1, seq2, match, mismatch, gap);
+
+        if (seedLength < 1 || seedLength > MAX_SEED_LENGTH)
+            throw new IllegalArgumentException("Seed length has to be between 1 and " + MAX_SEED_LENGTH + ".");
+        if (bandWidth < 0)
+            throw new IllegalArgumentException("Band width cannot be negative.");
+
+        this.bandWidth = bandWidth;
+
+        final int bestDiagonal = findDiagonal(seedLength);
+        this.seedFound = bestDiagonal != Integer.MIN_VALUE;
+        this.diagonal = bestDiagonal;
+    }
+
+    /**
+     * @return True if the sequences share a k-mer and the computation is restricted to a band.
+     */
+    public boolean isSeedFound()
+    {
+        return seedFound;
+    }
+
+    @Override
+    protected boolean hasRowBounds()
+    {
+        return seedFound;
+    }
+
+    @Override
+    protected int getRowStart(int j)
+    {
+        if (!seedFound)
+            return super.getRowStart(j);
+        return (int) Math.max(1, (long) j + diagonal - bandWidth);
+    }
+
+    @Override
+    protected int getRowEnd(int j)
+    {
+        if (!seedFound)
+            return super.getRowEnd(j);
+        return (int) Math.min(width - 1, (long) j + diagonal + bandWidth);
+    }
+
+    /**
+     * Find the diagonal with most k-mers shared by the two sequences.
+     *
+     * @param k Length of the k-mers.
+     * @return The diagonal (<code>i - j</code>), or {@link Integer#MIN_VALUE} if the sequences share no k-mer.
+     */
+    private int findDiagonal(int k)
+    {
+        final int length1 = seq1.length(), length2 = seq2.length();
+        if (length1 < k || length2 < k)
+            return Integer.MIN_VALUE;
+
+        // k-mers of seq2 shifted to the upper half of the long, with their positions in the lower half
+        final AlignmentWorkspace workspace = AlignmentWorkspace.get();
+        final long[] kmers2 = workspace.getLongs(AlignmentWorkspace.KMERS, length2 - k + 1);
+        int kmers2Count = 0;
+        final KmerIterator iterator2 = new KmerIterator(seq2, k);
+        while (iterator2.next()) {
+            kmers2[kmers2Count++] = (iterator2.kmer << 32) | iterator2.position;
+        }
+        Arrays.sort(kmers2, 0, kmers2Count);
+
+        // votes for the diagonals, indexed by diagonal + length2
+        final int[] votes = workspace.getInts(AlignmentWorkspace.DIAGONAL_VOTES, length1 + length2 + 1);
+        Arrays.fill(votes, 0, length1 + length2 + 1, 0);
+        int bestDiagonal = Integer.MIN_VALUE, bestVotes = 0;
+
+        final KmerIterator iterator1 = new KmerIterator(seq1, k);
+        while (iterator1.next()) {
+            int index = Arrays.binarySearch(kmers2, 0, kmers2Count, iterator1.kmer << 32);
+            if (index < 0)
+                index = -index - 1;
+
+            for (; index < kmers2Count && (kmers2[index] >>> 32) == iterator1.kmer; index++) {
+                final int position2 = (int) kmers2[index];
+                // positions in the sequences and coordinates in the table differ by the same offset
+                final int d = iterator1.position - position2;
+                final int v = ++votes[d + length2];
+                if (v > bestVotes) {
+                    bestVotes = v;
+                    bestDiagonal = d;
+                }
+            }
+        }
+
+        return bestDiagonal;
+    }
+
+    /**
+     * Iterates over the k-mers of a sequence which contain no escaped characters.
+     *
+     * @author Martin Pecka
+     */
+    private static class KmerIterator
+    {
+        /** The sequence. */
+        private final NucleotideSequence sequence;
+        /** Length of the k-mers. */
+        private final int                k;
+        /** Mask of the bits of a k-mer. */
+        private final long               mask;
+        /** Position of the next symbol to read. */
+        private int                      next     = 0;
+        /** Number of valid symbols at the end of {@link #kmer}. */
+        private int                      valid    = 0;
+
+        /** The current k-mer packed to 2 bits per base. */
+        long                             kmer     = 0;
+        /** Position of the first base of the current k-mer. */
+        int                              position = -1;
+
+        /**
+         * @param sequence The sequence.
+         * @param k Length of the k-mers.
+         */
+        KmerIterator(NucleotideSequence sequence, int k)
+        {
+            this.sequence = sequence;
+            this.k = k;
+            this.mask = (1L << (2 * k)) - 1;
+        }
+
+        /**
+         * Move to the next k-mer.
+         *
+         * @return False if there are no more k-mers.
+         */
+        boolean next()
+        {
+            while (next < sequence.length()) {
+                final int symbol = sequence.symbolAt(next++);
+                if (symbol >= NucleotideSequence.ESCAPE_OFFSET) {
+                    valid = 0;
+                    continue;
+                }
+
+                kmer = ((kmer << 2) | symbol) & mask;
+                if (++valid >= k) {
+                    position = next - k;
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
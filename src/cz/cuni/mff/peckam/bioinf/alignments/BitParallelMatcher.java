@@ -0,0 +1,193 @@
+/**  */
+package cz.cuni.mff.peckam.bioinf.alignments;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Approximate matching of a pattern in a text by Myers' bit-vector algorithm (in the multi-word form), which computes
+ * the edit distance of the pattern to the best matching substring of the text in
+ * <code>O(|text| * ceil(|pattern| / 64))</code> word operations.
+ * <p>
+ * One column of the DP table of the edit distance is represented by the vertical differences of its items, 64 items
+ * per word.
+ *
+ * @author Martin Pecka
+ */
+public class BitParallelMatcher
+{
+    /** Number of pattern characters processed in one word. */
+    private static final int              WORD_SIZE = 64;
+
+    /** Length of the pattern. */
+    private final int                     length;
+
+    /** Number of words needed for one column. */
+    private final int                     blocks;
+
+    /** The bit of the last pattern character in the last word. */
+    private final long                    lastBit;
+
+    /** For each of the symbols a, c, g, t, the bit mask of the pattern positions with that symbol. */
+    private final long[][]                peq;
+
+    /** The bit masks of the escaped symbols occurring in the pattern. */
+    private final Map<Integer, long[]>    escapedPeq = new HashMap<>();
+
+    /** Bit mask of no pattern positions, used for symbols not occurring in the pattern. */
+    private final long[]                  emptyPeq;
+
+    /**
+     * @param pattern The pattern to search for.
+     */
+    public BitParallelMatcher(NucleotideSequence pattern)
+    {
+        this.length = pattern.length();
+        this.blocks = Math.max(1, (length + WORD_SIZE - 1) / WORD_SIZE);
+        this.lastBit = 1L << ((Math.max(length, 1) - 1) % WORD_SIZE);
+
+        this.peq = new long[NucleotideSequence.ESCAPE_OFFSET][blocks];
+        this.emptyPeq = new long[blocks];
+
+        for (int i = 0; i < length; i++) {
+            final int symbol = pattern.symbolAt(i);
+            long[] symbolPeq;
+            if (symbol < NucleotideSequence.ESCAPE_OFFSET) {
+                symbolPeq = peq[symbol];
+            } else {
+                symbolPeq = escapedPeq.get(symbol);
+                if (symbolPeq == null) {
+                    symbolPeq = new long[blocks];
+                    escapedPeq.put(symbol, symbolPeq);
+                }
+            }
+            symbolPeq[i / WORD_SIZE] |= 1L << (i % WORD_SIZE);
+        }
+    }
+
+    /**
+     * Compute the edit distance of the pattern to the best matching substring of the text.
+     *
+     * @param text The text to search in.
+     * @return The edit distance (number of substitutions, insertions and deletions).
+     */
+    public int minDistance(NucleotideSequence text)
+    {
+        return search(text, -1, null);
+    }
+
+    /**
+     * Decide whether the pattern occurs in the text with at most the given number of edits.
+     *
+     * @param text The text to search in.
+     * @param maxDistance The maximum number of substitutions, insertions and deletions.
+     * @return True if some substring of the text is within the given edit distance from the pattern.
+     */
+    public boolean occursWithin(NucleotideSequence text, int maxDistance)
+    {
+        return search(text, maxDistance, null) <= maxDistance;
+    }
+
+    /**
+     * Find the end of the best matching substring of the text.
+     *
+     * @param text The text to search in.
+     * @return Position after the last character of the first of the best matching substrings.
+     */
+    public int findBestEnd(NucleotideSequence text)
+    {
+        final int[] end = new int[1];
+        search(text, -1, end);
+        return end[0];
+    }
+
+    /**
+     * Compute the edit distance of the pattern to the best matching substring of the text.
+     *
+     * @param text The text to search in.
+     * @param maxDistance Stop as soon as a match with at most this distance is found. Negative to never stop.
+     * @param bestEnd If not <code>null</code>, its first item is set to the position after the last character of the
+     *            best matching substring.
+     * @return The best distance found.
+     */
+    private int search(NucleotideSequence text, int maxDistance, int[] bestEnd)
+    {
+        if (bestEnd != null)
+            bestEnd[0] = 0;
+
+        if (length == 0)
+            return 0;
+
+        // vertical positive and negative differences of the current column (the zeroth column is 0, 1, 2, ...)
+        final AlignmentWorkspace workspace = AlignmentWorkspace.get();
+        final long[] pv = workspace.getLongs(AlignmentWorkspace.POSITIVE_DIFFERENCES, blocks);
+        final long[] mv = workspace.getLongs(AlignmentWorkspace.NEGATIVE_DIFFERENCES, blocks);
+        for (int b = 0; b < blocks; b++) {
+            pv[b] = -1L;
+            mv[b] = 0L;
+        }
+
+        int score = length;
+        int best = score;
+
+        for (int t = 0; t < text.length() && best > maxDistance; t++) {
+            final long[] eqs = getPeq(text.symbolAt(t));
+
+            // the first row is all zeros, the match may start anywhere in the text
+            int hin = 0;
+            for (int b = 0; b < blocks; b++) {
+                long eq = eqs[b];
+                final long pvb = pv[b], mvb = mv[b];
+
+                final long xv = eq | mvb;
+                if (hin < 0)
+                    eq |= 1L;
+                final long xh = (((eq & pvb) + pvb) ^ pvb) | eq;
+
+                long ph = mvb | ~(xh | pvb);
+                long mh = pvb & xh;
+
+                final long high = (b == blocks - 1) ? lastBit : (1L << (WORD_SIZE - 1));
+                int hout = 0;
+                if ((ph & high) != 0)
+                    hout = 1;
+                else if ((mh & high) != 0)
+                    hout = -1;
+
+                ph <<= 1;
+                mh <<= 1;
+                if (hin < 0)
+                    mh |= 1L;
+                else if (hin > 0)
+                    ph |= 1L;
+
+                pv[b] = mh | ~(xv | ph);
+                mv[b] = ph & xv;
+
+                hin = hout;
+            }
+
+            score += hin;
+            if (score < best) {
+                best = score;
+                if (bestEnd != null)
+                    bestEnd[0] = t + 1;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * @param symbol A symbol of the text.
+     * @return The bit masks of the pattern positions with the given symbol.
+     */
+    private long[] getPeq(int symbol)
+    {
+        if (symbol < NucleotideSequence.ESCAPE_OFFSET)
+            return peq[symbol];
+
+        final long[] result = escapedPeq.get(symbol);
+        return result != null ? result : emptyPeq;
+    }
+}
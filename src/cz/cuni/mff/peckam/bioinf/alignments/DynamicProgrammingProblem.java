@@ -1,7 +1,11 @@
 package cz.cuni.mff.peckam.bioinf.alignments;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 
 
@@ -14,61 +18,317 @@ import java.util.List;
  */
 public abstract class DynamicProgrammingProblem<T extends Number, Result>
 {
+    /** Traceback direction of an item with no predecessor. */
+    protected static final int TRACEBACK_NONE     = 0;
+    /** Traceback direction to the item <code>(i - 1, j - 1)</code>. */
+    protected static final int TRACEBACK_DIAGONAL = 1;
+    /** Traceback direction to the item <code>(i - 1, j)</code>. */
+    protected static final int TRACEBACK_LEFT     = 2;
+    /** Traceback direction to the item <code>(i, j - 1)</code>. */
+    protected static final int TRACEBACK_UP       = 3;
+
+    /**
+     * Size of the tiles computed in parallel (see {@link #setWavefrontPool(ForkJoinPool)}) along both dimensions. A
+     * multiple of 32, so that no two tiles share a word of the traceback table.
+     */
+    public static final int    WAVEFRONT_TILE_SIZE = 256;
+
+    /** Default number of items above which the tables are stored off-heap (see {@link #setOffHeapThreshold(long)}). */
+    public static final long     DEFAULT_OFF_HEAP_THRESHOLD = 1L << 22;
+
+    /** True if the <code>jdk.incubator.foreign</code> module needed by the off-heap tables is available. */
+    private static final boolean OFF_HEAP_AVAILABLE         = ModuleLayer.boot().findModule("jdk.incubator.foreign")
+                                                                    .isPresent();
+
+    /** Tables with more items than this are stored off-heap. */
+    private static volatile long offHeapThreshold           = DEFAULT_OFF_HEAP_THRESHOLD;
+
     /** The first dimension of the DP table. */
     protected final int   width;
 
     /** The second dimension of the DP table. */
     protected final int   height;
 
-    /** Table with the computed values. */
-    protected final T[][] valuesTable;
+    /**
+     * The table with the computed values and the traceback directions. Created by {@link #compute()} and released when
+     * it returns.
+     */
+    private DynamicProgrammingTable<T> table;
+
+    /** Number of words of the traceback occupied by one row. */
+    private final int     tracebackRowWords;
 
-    /** Table for tracing back the result. */
-    protected Tuple<Integer>[][] tracebackTable;
+    /** The pool to compute the tiles of the table in, or <code>null</code> to compute the table sequentially. */
+    private ForkJoinPool  wavefrontPool = null;
 
     /**
      * Create the dynamic problem.
+     * <p>
+     * The tables are not allocated until {@link #compute()} is called, so that subclasses can provide cheaper
+     * computations which don't need them.
      * 
      * @param width First dimension of the DP table.
      * @param height Second dimension of the DP table.
      */
-    @SuppressWarnings({ "unchecked" })
     public DynamicProgrammingProblem(int width, int height)
     {
         this.width = width;
         this.height = height;
-
-        valuesTable = createValuesArray(width, height);
-        tracebackTable = new Tuple[width][height];
+        this.tracebackRowWords = (width + 31) >>> 5;
     }
 
     /**
      * Compute the problem's solution.
+     * <p>
+     * If {@link #shouldComputeInLinearSpace()} returns true, the solution is computed by
+     * {@link #computeInLinearSpace()} and the tables are not allocated at all. Tables with more items than
+     * {@link #getOffHeapThreshold()} are stored off-heap if the subclass supports it (see
+     * {@link #createOffHeapTable(int, int)}), the other ones on the heap (see
+     * {@link #createHeapTable(int, int, long[], AlignmentWorkspace)}).
+     * <p>
+     * The computation is recorded as an {@link AlignmentEvent} if the event is enabled in the flight recorder.
      * 
      * @return The solution of the problem.
      */
     public final Result compute()
     {
-        System.gc();
+        final AlignmentEvent event = new AlignmentEvent();
+        event.begin();
+
+        final String kernel;
+        final Result result;
+        boolean offHeap = false;
+        if (shouldComputeInLinearSpace()) {
+            kernel = AlignmentEvent.KERNEL_LINEAR_SPACE;
+            result = computeInLinearSpace();
+        } else {
+            final boolean wavefront = wavefrontPool != null && width > WAVEFRONT_TILE_SIZE
+                    && height > WAVEFRONT_TILE_SIZE;
+            if (shouldStoreOffHeap((long) width * height))
+                table = createOffHeapTable(width, height);
+            offHeap = table != null;
+            if (!offHeap) {
+                final int tracebackWords = Math.multiplyExact(tracebackRowWords, height);
+                final long[] traceback;
+                final AlignmentWorkspace workspace;
+                if (wavefront) {
+                    // while waiting for the tiles, the thread may run other alignments which would reuse its workspace
+                    workspace = null;
+                    traceback = new long[tracebackWords];
+                } else {
+                    workspace = AlignmentWorkspace.get();
+                    traceback = workspace.getLongs(AlignmentWorkspace.TRACEBACK_TABLE, tracebackWords);
+                    Arrays.fill(traceback, 0, tracebackWords, 0L);
+                }
+                table = createHeapTable(width, height, traceback, workspace);
+            }
+
+            try {
+                init();
+
+                if (wavefront) {
+                    kernel = AlignmentEvent.KERNEL_WAVEFRONT;
+                    computeWavefront();
+                } else {
+                    kernel = AlignmentEvent.KERNEL_TABLE;
+                    computeSequentially();
+                }
+
+                result = findResult();
+            } finally {
+                // the heap table is reused by the next alignment of this thread, the off-heap one is freed
+                table.release();
+                table = null;
+            }
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            // -1 for the zeroth initialization column and row
+            event.length1 = width - 1;
+            event.length2 = height - 1;
+            event.cells = getComputedCells();
+            event.kernel = kernel;
+            event.offHeap = offHeap;
+            event.commit();
+        }
 
-        init();
+        return result;
+    }
 
+    /**
+     * Compute the table in parallel on the given pool, or sequentially if the pool is <code>null</code>.
+     * <p>
+     * The table is split to square tiles of {@link #WAVEFRONT_TILE_SIZE} items. The tiles on one anti-diagonal don't
+     * depend on each other, so they are computed in parallel, one anti-diagonal after another. Every tile is computed
+     * in the order given by {@link #nextCoords(Tuple)}.
+     * <p>
+     * This requires that {@link #computeValueAndSaveTraceback(Tuple)} only reads the items <code>(i', j')</code> with
+     * <code>i' &lt;= i</code> and <code>j' &lt;= j</code> and only writes the traceback of the computed item (which is
+     * true for the alignment problems), and that {@link #nextCoords(Tuple)} goes through the items row by row (items
+     * with the same <code>j</code>) with increasing <code>i</code>, as the default implementation does.
+     * 
+     * @param pool The pool to use. Only tables larger than a tile in both dimensions are computed in parallel.
+     */
+    public void setWavefrontPool(ForkJoinPool pool)
+    {
+        this.wavefrontPool = pool;
+    }
+
+    /**
+     * Set the number of items of the DP table above which the tables of all the problems are stored in native memory
+     * instead of the Java heap. Such tables don't put pressure on the garbage collector, their values are stored as
+     * primitives and they are freed as soon as the computation ends.
+     * <p>
+     * The off-heap tables need the <code>jdk.incubator.foreign</code> module (run Java with
+     * <code>--add-modules jdk.incubator.foreign</code>). Without it, all the tables are stored on the heap.
+     * <p>
+     * The problems which can be computed without the tables may do so for even larger tables, see
+     * {@link AlignmentProblem#setOffHeapLinearSpaceThreshold(long)}.
+     * 
+     * @param threshold The number of items. 0 to store all the tables off-heap, {@link Long#MAX_VALUE} to store none of
+     *            them off-heap.
+     */
+    public static void setOffHeapThreshold(long threshold)
+    {
+        if (threshold < 0)
+            throw new IllegalArgumentException("The off-heap threshold can't be negative.");
+
+        offHeapThreshold = threshold;
+    }
+
+    /**
+     * @return The number of items of the DP table above which the tables are stored off-heap, see
+     *         {@link #setOffHeapThreshold(long)}.
+     */
+    public static long getOffHeapThreshold()
+    {
+        return offHeapThreshold;
+    }
+
+    /**
+     * @return True if the tables can be stored off-heap, i.e. the <code>jdk.incubator.foreign</code> module is
+     *         available.
+     */
+    public static boolean isOffHeapStorageAvailable()
+    {
+        return OFF_HEAP_AVAILABLE;
+    }
+
+    /**
+     * @param cells Number of items of a DP table.
+     * @return True if the table should be stored off-heap (if the problem supports it).
+     */
+    static boolean shouldStoreOffHeap(long cells)
+    {
+        return OFF_HEAP_AVAILABLE && cells > offHeapThreshold;
+    }
+
+    /**
+     * Fill the tables item by item in the order given by {@link #nextCoords(Tuple)}.
+     */
+    private void computeSequentially()
+    {
         Tuple<Integer> coords = getCoordsAfterInit();
+        while (coords.elem1 < width && coords.elem2 < height) {
+            coords = computeRow(coords, coords.elem2, width);
+        }
+    }
 
-//        final int iterations = width * height;
+    /**
+     * Fill the tables by tiles on {@link #wavefrontPool}, see {@link #setWavefrontPool(ForkJoinPool)}.
+     */
+    private void computeWavefront()
+    {
+        final Tuple<Integer> first = getCoordsAfterInit();
+        final int tilesI = (width + WAVEFRONT_TILE_SIZE - 1) / WAVEFRONT_TILE_SIZE;
+        final int tilesJ = (height + WAVEFRONT_TILE_SIZE - 1) / WAVEFRONT_TILE_SIZE;
 
-        for (/* int i = 0 */; coords.elem1 < width && coords.elem2 < height; /* i++ */) {
-            valuesTable[coords.elem1][coords.elem2] = computeValueAndSaveTraceback(coords);
+        for (int diagonal = 0; diagonal < tilesI + tilesJ - 1; diagonal++) {
+            final List<RecursiveAction> tiles = new ArrayList<>();
+            for (int a = Math.max(0, diagonal - tilesJ + 1); a <= Math.min(diagonal, tilesI - 1); a++) {
+                final int tileI = a * WAVEFRONT_TILE_SIZE, tileJ = (diagonal - a) * WAVEFRONT_TILE_SIZE;
+                tiles.add(new RecursiveAction() {
+                    private static final long serialVersionUID = 1L;
 
-            coords = nextCoords(coords);
+                    @Override
+                    protected void compute()
+                    {
+                        computeTile(first, tileI, tileJ);
+                    }
+                });
+            }
+
+            // the tasks of the next anti-diagonal are created only after all of these have finished
+            wavefrontPool.invoke(new RecursiveAction() {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected void compute()
+                {
+                    invokeAll(tiles);
+                }
+            });
+        }
+    }
+
+    /**
+     * Compute the items of one tile in the order given by {@link #nextCoords(Tuple)}.
+     * 
+     * @param first The first item to compute (see {@link #getCoordsAfterInit()}).
+     * @param tileI The first coordinate of the tile's first item.
+     * @param tileJ The second coordinate of the tile's first item.
+     */
+    private void computeTile(Tuple<Integer> first, int tileI, int tileJ)
+    {
+        final int endI = Math.min(width, tileI + WAVEFRONT_TILE_SIZE);
+        final int endJ = Math.min(height, tileJ + WAVEFRONT_TILE_SIZE);
+
+        for (int j = Math.max(tileJ, first.elem2); j < endJ; j++) {
+            // let nextCoords() skip the items which are not computed
+            Tuple<Integer> coords;
+            if (j == first.elem2 && tileI <= first.elem1)
+                coords = first;
+            else if (tileI == 0)
+                coords = nextCoords(new Tuple<>(width - 1, j - 1));
+            else
+                coords = nextCoords(new Tuple<>(tileI - 1, j));
 
-//            if ((10 * i) / iterations != (10 * (i - 1)) / iterations)
-//                System.err.println((100 * i) / iterations + "%");
+            computeRow(coords, j, endI);
         }
+    }
 
-        System.gc();
+    /**
+     * @return Number of the items of the DP table which are computed (the default is all of them). Only used to
+     *         describe the computation, so it may be slow.
+     */
+    protected long getComputedCells()
+    {
+        return (long) width * height;
+    }
 
-        return findResult();
+    /**
+     * Return true if the solution should be computed without the DP tables.
+     * <p>
+     * Override this together with {@link #computeInLinearSpace()} for problems too big to fit their tables in memory.
+     * 
+     * @return True if {@link #compute()} should call {@link #computeInLinearSpace()}.
+     */
+    protected boolean shouldComputeInLinearSpace()
+    {
+        return false;
+    }
+
+    /**
+     * Compute the problem's solution in memory linear in {@link #width} and {@link #height}.
+     * <p>
+     * Called by {@link #compute()}, don't call it manually.
+     * 
+     * @return The solution of the problem.
+     */
+    protected Result computeInLinearSpace()
+    {
+        throw new UnsupportedOperationException("The problem cannot be computed in linear space.");
     }
 
     /**
@@ -82,7 +342,117 @@ public abstract class DynamicProgrammingProblem<T extends Number, Result>
     protected abstract T[][] createValuesArray(int width, int height);
 
     /**
-     * Fill {@link #valuesTable} and tracebackTable with inizialization values.
+     * Create a table of the desired dimensions stored on the heap.
+     * <p>
+     * The default implementation stores the values in the array created by {@link #createValuesArray(int, int)}.
+     * 
+     * @param width First dimension of the table.
+     * @param height Second dimension of the table.
+     * @param traceback The array for the packed traceback directions (every row starting at a new word), filled with
+     *            zeros.
+     * @param workspace The workspace of the thread to borrow the values from, or <code>null</code> if the values have
+     *            to be allocated (when the thread may compute other problems before this one is finished).
+     * @return The table.
+     */
+    DynamicProgrammingTable<T> createHeapTable(int width, int height, long[] traceback, AlignmentWorkspace workspace)
+    {
+        return new HeapTable<>(createValuesArray(width, height), traceback, tracebackRowWords);
+    }
+
+    /**
+     * Create a table of the desired dimensions stored off-heap.
+     * <p>
+     * Called by {@link #compute()} only for tables with more items than {@link #getOffHeapThreshold()} and only if
+     * {@link #isOffHeapStorageAvailable()}. The default implementation returns <code>null</code>, so the tables are
+     * always stored on the heap.
+     * 
+     * @param width First dimension of the table.
+     * @param height Second dimension of the table.
+     * @return The table, or <code>null</code> to store the table on the heap.
+     */
+    DynamicProgrammingTable<T> createOffHeapTable(int width, int height)
+    {
+        return null;
+    }
+
+    /**
+     * @return The table of the problem being computed, <code>null</code> outside of {@link #compute()}.
+     */
+    final DynamicProgrammingTable<T> getTable()
+    {
+        return table;
+    }
+
+    /**
+     * Compute the items of a row in the order given by {@link #nextCoords(Tuple)} and save their values.
+     * <p>
+     * Override this to compute the items without allocating the coordinates and boxing the values of every item.
+     * 
+     * @param coords The first item to compute.
+     * @param j The second coordinate of the row. Nothing is computed if the first item isn't in the row.
+     * @param endI The first coordinate after the last item to compute.
+     * @return The coordinates of the item after the last computed one.
+     */
+    Tuple<Integer> computeRow(Tuple<Integer> coords, int j, int endI)
+    {
+        while (coords.elem2 == j && coords.elem1 < endI) {
+            table.setValue(coords.elem1, coords.elem2, computeValueAndSaveTraceback(coords));
+            coords = nextCoords(coords);
+        }
+        return coords;
+    }
+
+    /**
+     * Return the value of the given item.
+     * 
+     * @param i The first coordinate of the item.
+     * @param j The second coordinate of the item.
+     * @return The value. Undefined if the item hasn't been computed yet.
+     */
+    protected final T getItem(int i, int j)
+    {
+        return table.getValue(i, j);
+    }
+
+    /**
+     * Save the value of the given item.
+     * 
+     * @param i The first coordinate of the item.
+     * @param j The second coordinate of the item.
+     * @param value The value.
+     */
+    protected final void setItem(int i, int j, T value)
+    {
+        table.setValue(i, j, value);
+    }
+
+    /**
+     * Save the traceback direction of the given item.
+     * 
+     * @param i The first coordinate of the item.
+     * @param j The second coordinate of the item.
+     * @param direction The direction, one of the <code>TRACEBACK_*</code> constants.
+     */
+    protected final void setTraceback(int i, int j, int direction)
+    {
+        table.setTraceback(i, j, direction);
+    }
+
+    /**
+     * Return the traceback direction of the given item.
+     * 
+     * @param i The first coordinate of the item.
+     * @param j The second coordinate of the item.
+     * @return The direction, one of the <code>TRACEBACK_*</code> constants.
+     */
+    protected final int getTraceback(int i, int j)
+    {
+        return table.getTraceback(i, j);
+    }
+
+    /**
+     * Fill the table with inizialization values (see {@link #setItem(int, int, Number)} and
+     * {@link #setTraceback(int, int, int)}).
      * <p>
      * Called by {@link #compute()}, don't call it manually.
      */
@@ -143,22 +513,40 @@ public abstract class DynamicProgrammingProblem<T extends Number, Result>
      * @param lastElemCoords Coordinates of the element to traceback.
      * 
      * @return The best path from start to the given element.
+     * @throws IllegalStateException If not called from {@link #findResult()}, since the tables only exist during
+     *             {@link #compute()}.
      */
 
     public final List<Tuple<Integer>> traceback(Tuple<Integer> lastElemCoords)
     {
+        if (table == null)
+            throw new IllegalStateException("The traceback is only available while the problem is being computed.");
+
         final List<Tuple<Integer>> result = new ArrayList<>();
 
         result.add(lastElemCoords);
 
+        // the path is collected from its end and reversed afterwards
         Tuple<Integer> coords = lastElemCoords;
+        int i = coords.elem1, j = coords.elem2;
         while (!shouldTracebackStop(coords)) {
-            coords = tracebackTable[coords.elem1][coords.elem2];
-            result.add(0, coords);
+            final int direction = getTraceback(i, j);
+            if (direction == TRACEBACK_NONE)
+                break;
+
+            if (direction != TRACEBACK_UP)
+                i--;
+            if (direction != TRACEBACK_LEFT)
+                j--;
+
+            coords = new Tuple<>(i, j);
+            result.add(coords);
         }
 
+        Collections.reverse(result);
+
         // we don't want to have the zeroth column and row in traceback
-        if (result.get(0) == null || (result.get(0).elem1 == 0 && result.get(0).elem2 == 0))
+        if (result.get(0).elem1 == 0 && result.get(0).elem2 == 0)
             result.remove(0);
 
         return result;
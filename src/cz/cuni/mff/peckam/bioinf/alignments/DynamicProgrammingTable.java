@@ -0,0 +1,48 @@
+/**  */
+package cz.cuni.mff.peckam.bioinf.alignments;
+
+/**
+ * Storage of the values and the traceback directions of the items of a DP table (see
+ * {@link DynamicProgrammingProblem}).
+ * <p>
+ * The items of one row (with the same <code>j</code>) may be written concurrently with the items of other rows, and
+ * with the items of the same row which are at least 32 items apart.
+ *
+ * @author Martin Pecka
+ * @param <T> Type of the values.
+ */
+interface DynamicProgrammingTable<T>
+{
+    /**
+     * @param i The first coordinate of the item.
+     * @param j The second coordinate of the item.
+     * @return The value of the item.
+     */
+    T getValue(int i, int j);
+
+    /**
+     * @param i The first coordinate of the item.
+     * @param j The second coordinate of the item.
+     * @param value The value of the item.
+     */
+    void setValue(int i, int j, T value);
+
+    /**
+     * @param i The first coordinate of the item.
+     * @param j The second coordinate of the item.
+     * @return The traceback direction of the item, <code>TRACEBACK_NONE</code> if it hasn't been set.
+     */
+    int getTraceback(int i, int j);
+
+    /**
+     * @param i The first coordinate of the item.
+     * @param j The second coordinate of the item.
+     * @param direction The traceback direction of the item.
+     */
+    void setTraceback(int i, int j, int direction);
+
+    /**
+     * Release the memory of the table. The table can't be used afterwards.
+     */
+    void release();
+}
@@ -0,0 +1,66 @@
+/**  */
+package cz.cuni.mff.peckam.bioinf.alignments;
+
+/**
+ * DP table stored on the Java heap: the values in an array of rows of boxed values, and the traceback directions
+ * packed to 2 bits per item, 32 items per word, every row (items with the same <code>j</code>) starting at a new word.
+ *
+ * @author Martin Pecka
+ * @param <T> Type of the values.
+ */
+final class HeapTable<T> implements DynamicProgrammingTable<T>
+{
+    /** The values, indexed by <code>[i][j]</code>. */
+    private T[][]     values;
+
+    /** The packed traceback directions. */
+    private long[]    traceback;
+
+    /** Number of words of the traceback occupied by one row. */
+    private final int rowWords;
+
+    /**
+     * @param values The array of the values, indexed by <code>[i][j]</code>.
+     * @param traceback The array for the traceback directions, filled with zeros. It may be longer than needed.
+     * @param rowWords Number of words of the traceback occupied by one row.
+     */
+    HeapTable(T[][] values, long[] traceback, int rowWords)
+    {
+        this.values = values;
+        this.traceback = traceback;
+        this.rowWords = rowWords;
+    }
+
+    @Override
+    public T getValue(int i, int j)
+    {
+        return values[i][j];
+    }
+
+    @Override
+    public void setValue(int i, int j, T value)
+    {
+        values[i][j] = value;
+    }
+
+    @Override
+    public int getTraceback(int i, int j)
+    {
+        return (int) (traceback[j * rowWords + (i >>> 5)] >>> ((i & 31) << 1)) & 3;
+    }
+
+    @Override
+    public void setTraceback(int i, int j, int direction)
+    {
+        final int word = j * rowWords + (i >>> 5);
+        final int shift = (i & 31) << 1;
+        traceback[word] = (traceback[word] & ~(3L << shift)) | (((long) direction) << shift);
+    }
+
+    @Override
+    public void release()
+    {
+        values = null;
+        traceback = null;
+    }
+}
@@ -0,0 +1,24 @@
+/**  */
+package cz.cuni.mff.peckam.bioinf.alignments;
+
+/**
+ * DP table of int values, which can be accessed without boxing the values.
+ *
+ * @author Martin Pecka
+ */
+interface IntDynamicProgrammingTable extends DynamicProgrammingTable<Integer>
+{
+    /**
+     * @param i The first coordinate of the item.
+     * @param j The second coordinate of the item.
+     * @return The value of the item.
+     */
+    int getInt(int i, int j);
+
+    /**
+     * @param i The first coordinate of the item.
+     * @param j The second coordinate of the item.
+     * @param value The value of the item.
+     */
+    void setInt(int i, int j, int value);
+}
@@ -0,0 +1,84 @@
+/**  */
+package cz.cuni.mff.peckam.bioinf.alignments;
+
+/**
+ * DP table of int values stored on the Java heap without boxing them.
+ * <p>
+ * The values are primitive ints stored row by row (a row are the items with the same <code>j</code>) in a single
+ * array, which may be borrowed from the {@link AlignmentWorkspace}. The traceback directions are packed the same way as
+ * in {@link HeapTable}.
+ *
+ * @author Martin Pecka
+ */
+final class IntHeapTable implements IntDynamicProgrammingTable
+{
+    /** The values. */
+    private int[]     values;
+
+    /** The packed traceback directions. */
+    private long[]    traceback;
+
+    /** Number of items in a row. */
+    private final int width;
+
+    /** Number of words of the traceback occupied by one row. */
+    private final int rowWords;
+
+    /**
+     * @param values The array for the values, at least <code>width * height</code> long. Its content may be undefined.
+     * @param width The first dimension of the table.
+     * @param traceback The array for the traceback directions, filled with zeros. It may be longer than needed.
+     */
+    IntHeapTable(int[] values, int width, long[] traceback)
+    {
+        this.values = values;
+        this.width = width;
+        this.traceback = traceback;
+        this.rowWords = (width + 31) >>> 5;
+    }
+
+    @Override
+    public Integer getValue(int i, int j)
+    {
+        return getInt(i, j);
+    }
+
+    @Override
+    public void setValue(int i, int j, Integer value)
+    {
+        setInt(i, j, value);
+    }
+
+    @Override
+    public int getInt(int i, int j)
+    {
+        return values[j * width + i];
+    }
+
+    @Override
+    public void setInt(int i, int j, int value)
+    {
+        values[j * width + i] = value;
+    }
+
+    @Override
+    public int getTraceback(int i, int j)
+    {
+        return (int) (traceback[j * rowWords + (i >>> 5)] >>> ((i & 31) << 1)) & 3;
+    }
+
+    @Override
+    public void setTraceback(int i, int j, int direction)
+    {
+        final int word = j * rowWords + (i >>> 5);
+        final int shift = (i & 31) << 1;
+        traceback[word] = (traceback[word] & ~(3L << shift)) | (((long) direction) << shift);
+    }
+
+    @Override
+    public void release()
+    {
+        values = null;
+        traceback = null;
+    }
+}
@@ -0,0 +1,232 @@
+/**  */
+package cz.cuni.mff.peckam.bioinf.alignments;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Global alignment of parts of two sequences in memory linear in their lengths (Hirschberg's divide and conquer).
+ * <p>
+ * The path is searched in the DP table of the whole sequences (with the zeroth initialization row and column) between
+ * two of its items, so that it can be used as the traceback of the other alignment problems once the start and end of
+ * their alignment is known (eg. from {@link AlignmentProblem#computeScore()}). Equal values are preferred the same way
+ * as in {@link OverlapAlignmentProblem} only in the small subproblems, so the path may differ from the one found by
+ * the full DP if there are more optimal paths.
+ *
+ * @author Martin Pecka
+ */
+public class LinearSpaceAlignment
+{
+    /** Subproblems with at most this number of items are solved by the full DP. */
+    private static final int                BASE_CASE_CELLS = 1 << 12;
+
+    /** The first sequence. */
+    private final NucleotideSequence        seq1;
+    /** The second sequence. */
+    private final NucleotideSequence        seq2;
+    /** The scoring matrix. */
+    private final ScoringMatrix<Character> scoringMatrix;
+
+    /**
+     * @param seq1 The first sequence.
+     * @param seq2 The second sequence.
+     * @param scoringMatrix The scoring matrix (only its gap extension penalty is used for gaps).
+     */
+    public LinearSpaceAlignment(NucleotideSequence seq1, NucleotideSequence seq2, ScoringMatrix<Character> scoringMatrix)
+    {
+        this.seq1 = seq1;
+        this.seq2 = seq2;
+        this.scoringMatrix = scoringMatrix;
+    }
+
+    /**
+     * Find the best path between the two given items of the DP table.
+     *
+     * @param start1 The first coordinate of the start item.
+     * @param start2 The second coordinate of the start item.
+     * @param end1 The first coordinate of the end item (at least <code>start1</code>).
+     * @param end2 The second coordinate of the end item (at least <code>start2</code>).
+     * @return The path from the start item to the end item (including both of them).
+     */
+    public List<Tuple<Integer>> path(int start1, int start2, int end1, int end2)
+    {
+        final List<Tuple<Integer>> result = new ArrayList<>((end1 - start1) + (end2 - start2) + 1);
+        result.add(new Tuple<>(start1, start2));
+        appendPath(start1, start2, end1, end2, result);
+        return result;
+    }
+
+    /**
+     * Find the best path between the two given items of the DP table and append it to the given list (without the
+     * start item).
+     *
+     * @param start1 The first coordinate of the start item.
+     * @param start2 The second coordinate of the start item.
+     * @param end1 The first coordinate of the end item.
+     * @param end2 The second coordinate of the end item.
+     * @param result The list to append the path to.
+     */
+    private void appendPath(int start1, int start2, int end1, int end2, List<Tuple<Integer>> result)
+    {
+        final int length1 = end1 - start1, length2 = end2 - start2;
+
+        if (length1 == 0) {
+            for (int j = start2 + 1; j <= end2; j++)
+                result.add(new Tuple<>(start1, j));
+        } else if (length2 == 0) {
+            for (int i = start1 + 1; i <= end1; i++)
+                result.add(new Tuple<>(i, start2));
+        } else if (length1 == 1 || ((long) length1 + 1) * (length2 + 1) <= BASE_CASE_CELLS) {
+            appendPathByFullTable(start1, start2, end1, end2, result);
+        } else {
+            final int middle1 = start1 + length1 / 2;
+
+            final int[] forward = forwardScores(start1, start2, middle1, end2);
+            final int[] backward = backwardScores(middle1, start2, end1, end2);
+
+            int best = 0;
+            for (int j = 1; j <= length2; j++) {
+                if (forward[j] + backward[j] > forward[best] + backward[best])
+                    best = j;
+            }
+
+            final int middle2 = start2 + best;
+            appendPath(start1, start2, middle1, middle2, result);
+            appendPath(middle1, middle2, end1, end2, result);
+        }
+    }
+
+    /**
+     * Compute the scores of the best paths from the start item to all items of the last row.
+     *
+     * @param start1 The first coordinate of the start item.
+     * @param start2 The second coordinate of the start item.
+     * @param end1 The first coordinate of the last row.
+     * @param end2 The second coordinate of the last item of the last row.
+     * @return The scores, indexed by the second coordinate relative to <code>start2</code>. Valid until the next call on
+     *         this thread.
+     */
+    private int[] forwardScores(int start1, int start2, int end1, int end2)
+    {
+        final int gap = scoringMatrix.getGapExtendPenalty();
+        final int length2 = end2 - start2;
+
+        final int[] scores = AlignmentWorkspace.get().getInts(AlignmentWorkspace.FORWARD_ROW, length2 + 1);
+        scores[0] = 0;
+        for (int j = 1; j <= length2; j++)
+            scores[j] = scores[j - 1] + gap;
+
+        for (int i = start1 + 1; i <= end1; i++) {
+            final Character char1 = seq1.charAt(i - 1);
+            // scores[j - 1] of the previous row, scores[j] is already overwritten when it's needed
+            int diagonal = scores[0];
+            scores[0] += gap;
+            for (int j = 1; j <= length2; j++) {
+                final int seq1ToSeq2 = diagonal + scoringMatrix.getScore(char1, seq2.charAt(start2 + j - 1));
+                diagonal = scores[j];
+                scores[j] = Math.max(seq1ToSeq2, Math.max(scores[j] + gap, scores[j - 1] + gap));
+            }
+        }
+
+        return scores;
+    }
+
+    /**
+     * Compute the scores of the best paths from all items of the first row to the end item.
+     *
+     * @param start1 The first coordinate of the first row.
+     * @param start2 The second coordinate of the first item of the first row.
+     * @param end1 The first coordinate of the end item.
+     * @param end2 The second coordinate of the end item.
+     * @return The scores, indexed by the second coordinate relative to <code>start2</code>. Valid until the next call on
+     *         this thread.
+     */
+    private int[] backwardScores(int start1, int start2, int end1, int end2)
+    {
+        final int gap = scoringMatrix.getGapExtendPenalty();
+        final int length2 = end2 - start2;
+
+        final int[] scores = AlignmentWorkspace.get().getInts(AlignmentWorkspace.BACKWARD_ROW, length2 + 1);
+        scores[length2] = 0;
+        for (int j = length2 - 1; j >= 0; j--)
+            scores[j] = scores[j + 1] + gap;
+
+        for (int i = end1; i > start1; i--) {
+            final Character char1 = seq1.charAt(i - 1);
+            int diagonal = scores[length2];
+            scores[length2] += gap;
+            for (int j = length2 - 1; j >= 0; j--) {
+                final int seq1ToSeq2 = diagonal + scoringMatrix.getScore(char1, seq2.charAt(start2 + j));
+                diagonal = scores[j];
+                scores[j] = Math.max(seq1ToSeq2, Math.max(scores[j] + gap, scores[j + 1] + gap));
+            }
+        }
+
+        return scores;
+    }
+
+    /**
+     * Find the best path between the two given items by the full DP and append it to the given list (without the start
+     * item).
+     *
+     * @param start1 The first coordinate of the start item.
+     * @param start2 The second coordinate of the start item.
+     * @param end1 The first coordinate of the end item.
+     * @param end2 The second coordinate of the end item.
+     * @param result The list to append the path to.
+     */
+    private void appendPathByFullTable(int start1, int start2, int end1, int end2, List<Tuple<Integer>> result)
+    {
+        final int gap = scoringMatrix.getGapExtendPenalty();
+        final int width = end1 - start1 + 1, height = end2 - start2 + 1;
+
+        final AlignmentWorkspace workspace = AlignmentWorkspace.get();
+        final int[] values = workspace.getInts(AlignmentWorkspace.BASE_CASE_VALUES, width * height);
+        // 0 = diagonal, 1 = (i - 1, j), 2 = (i, j - 1)
+        final byte[] directions = workspace.getBytes(AlignmentWorkspace.BASE_CASE_DIRECTIONS, width * height);
+        values[0] = 0;
+
+        for (int i = 1; i < width; i++) {
+            values[i] = values[i - 1] + gap;
+            directions[i] = 1;
+        }
+        for (int j = 1; j < height; j++) {
+            values[j * width] = values[(j - 1) * width] + gap;
+            directions[j * width] = 2;
+
+            final Character char2 = seq2.charAt(start2 + j - 1);
+            for (int i = 1; i < width; i++) {
+                final int item = j * width + i;
+                final int seq1ToSeq2 = values[item - width - 1]
+                        + scoringMatrix.getScore(seq1.charAt(start1 + i - 1), char2);
+                final int seq1ToGap = values[item - 1] + gap;
+                final int gapToSeq2 = values[item - width] + gap;
+
+                if (seq1ToSeq2 >= seq1ToGap && seq1ToSeq2 >= gapToSeq2) {
+                    values[item] = seq1ToSeq2;
+                    directions[item] = 0;
+                } else if (seq1ToGap >= seq1ToSeq2 && seq1ToGap >= gapToSeq2) {
+                    values[item] = seq1ToGap;
+                    directions[item] = 1;
+                } else {
+                    values[item] = gapToSeq2;
+                    directions[item] = 2;
+                }
+            }
+        }
+
+        final List<Tuple<Integer>> path = new ArrayList<>(width + height);
+        int i = width - 1, j = height - 1;
+        while (i > 0 || j > 0) {
+            path.add(new Tuple<>(start1 + i, start2 + j));
+            final byte direction = directions[j * width + i];
+            if (direction != 2)
+                i--;
+            if (direction != 1)
+                j--;
+        }
+
+        for (int k = path.size() - 1; k >= 0; k--)
+            result.add(path.get(k));
+    }
+}
@@ -0,0 +1,492 @@
+/**  */
+package cz.cuni.mff.peckam.bioinf.alignments;
+
+import java.util.Arrays;
+
+/**
+ * A sequence of nucleotides packed to 2 bits per base.
+ * <p>
+ * The bases a, c, g and t (in any case) are stored in a <code>long[]</code>, 32 bases per word. Any other character
+ * (eg. N) is escaped - the position holds zero bits and the character itself is stored in a small sorted side table,
+ * so only the exceptional characters pay for the extra memory.
+ * <p>
+ * The sequence can grow at both of its ends (which is what the consensus sequence needs), but it cannot shrink. The
+ * bases are stored in the middle of the array with free space on both sides, so both appending and prepending
+ * <code>k</code> bases take amortized <code>O(k)</code> time.
+ * <p>
+ * The subsequences are views sharing the array of the bases with the original sequence (which is possible because the
+ * stored bases never change), so the windows of a long sequence are cheap. A view copies its bases when it is first
+ * modified.
+ *
+ * @author Martin Pecka
+ */
+public final class NucleotideSequence implements CharSequence
+{
+    /** Symbol of adenine. */
+    public static final int     A             = 0;
+    /** Symbol of cytosine. */
+    public static final int     C             = 1;
+    /** Symbol of guanine. */
+    public static final int     G             = 2;
+    /** Symbol of thymine. */
+    public static final int     T             = 3;
+    /** Symbols of escaped characters are the character's code plus this offset. */
+    public static final int     ESCAPE_OFFSET = 4;
+
+    /** The characters corresponding to the 2-bit symbols. */
+    private static final char[] BASES         = { 'a', 'c', 'g', 't' };
+
+    /** Number of bases stored in one word of {@link #bits}. */
+    private static final int    BASES_PER_WORD = 32;
+
+    /**
+     * The packed bases, base <code>i</code> is stored at position <code>p = offset + i</code>, which are the bits
+     * <code>2*(p%32)</code> of word <code>p/32</code>. The positions outside of the sequence are zero.
+     */
+    private long[]              bits;
+    /** Position of the first base in {@link #bits}. */
+    private int                 offset          = 0;
+    /** Number of bases in the sequence. */
+    private int                 length;
+    /** True if {@link #bits} may be shared with other sequences and has to be copied before it is modified. */
+    private boolean             shared          = false;
+    /** Sorted positions (in {@link #bits}) of the escaped characters. */
+    private int[]               escapePositions = new int[0];
+    /** The escaped characters (corresponding to {@link #escapePositions}). */
+    private char[]              escapeChars     = new char[0];
+    /** Number of valid items in {@link #escapePositions} and {@link #escapeChars}. */
+    private int                 escapeCount     = 0;
+
+    /**
+     * Create an empty sequence.
+     */
+    public NucleotideSequence()
+    {
+        this(BASES_PER_WORD);
+    }
+
+    /**
+     * Create an empty sequence.
+     *
+     * @param capacity The expected number of bases.
+     */
+    public NucleotideSequence(int capacity)
+    {
+        bits = new long[wordsFor(Math.max(capacity, 1))];
+        length = 0;
+    }
+
+    /**
+     * Create a view of a part of the given bases.
+     *
+     * @param bits The shared bases.
+     * @param offset Position of the first base of the view.
+     * @param length Number of bases of the view.
+     */
+    private NucleotideSequence(long[] bits, int offset, int length)
+    {
+        this.bits = bits;
+        this.offset = offset;
+        this.length = length;
+        this.shared = true;
+    }
+
+    /**
+     * Create a copy of the given sequence.
+     *
+     * @param other The sequence to copy.
+     */
+    public NucleotideSequence(NucleotideSequence other)
+    {
+        this(other.length);
+        append(other);
+    }
+
+    /**
+     * Create a sequence from the given characters.
+     *
+     * @param chars The characters to pack.
+     * @return The packed sequence.
+     */
+    public static NucleotideSequence valueOf(CharSequence chars)
+    {
+        final NucleotideSequence result = new NucleotideSequence(chars.length());
+        for (int i = 0; i < chars.length(); i++) {
+            result.append(chars.charAt(i));
+        }
+        return result;
+    }
+
+    /**
+     * Return the symbol for the given character.
+     *
+     * @param c The character.
+     * @return One of {@link #A}, {@link #C}, {@link #G}, {@link #T}, or <code>{@link #ESCAPE_OFFSET} + c</code> for
+     *         any other character.
+     */
+    public static int encode(char c)
+    {
+        switch (c) {
+            case 'a':
+            case 'A':
+                return A;
+            case 'c':
+            case 'C':
+                return C;
+            case 'g':
+            case 'G':
+                return G;
+            case 't':
+            case 'T':
+                return T;
+            default:
+                return ESCAPE_OFFSET + c;
+        }
+    }
+
+    /**
+     * Return the character for the given symbol.
+     *
+     * @param symbol The symbol (as returned by {@link #encode(char)}).
+     * @return The character.
+     */
+    public static char decode(int symbol)
+    {
+        return symbol < ESCAPE_OFFSET ? BASES[symbol] : (char) (symbol - ESCAPE_OFFSET);
+    }
+
+    @Override
+    public int length()
+    {
+        return length;
+    }
+
+    /**
+     * Return the symbol at the given position.
+     *
+     * @param index The position.
+     * @return The symbol (see {@link #encode(char)}).
+     */
+    public int symbolAt(int index)
+    {
+        if (index < 0 || index >= length)
+            throw new IndexOutOfBoundsException("Index: " + index + ", length: " + length);
+
+        final int position = offset + index;
+        if (escapeCount > 0) {
+            final int escapeIndex = Arrays.binarySearch(escapePositions, 0, escapeCount, position);
+            if (escapeIndex >= 0)
+                return ESCAPE_OFFSET + escapeChars[escapeIndex];
+        }
+
+        return (int) (bits[position >>> 5] >>> ((position & 31) << 1)) & 3;
+    }
+
+    @Override
+    public char charAt(int index)
+    {
+        return decode(symbolAt(index));
+    }
+
+    /**
+     * Compare a region of this sequence to a region of another sequence. The packed bases are compared a word at a
+     * time.
+     *
+     * @param start Position of the first character of the region of this sequence.
+     * @param other The other sequence.
+     * @param otherStart Position of the first character of the region of the other sequence.
+     * @param count Length of the regions.
+     * @return True if both regions consist of the same characters, false if they differ or if some of them isn't
+     *         inside of its sequence.
+     */
+    public boolean regionMatches(int start, NucleotideSequence other, int otherStart, int count)
+    {
+        if (start < 0 || otherStart < 0 || count < 0 || start > length - count || otherStart > other.length - count)
+            return false;
+
+        long bit = 2L * (offset + start), otherBit = 2L * (other.offset + otherStart), remaining = 2L * count;
+        while (remaining > 0) {
+            final int chunk = (int) Math.min(remaining, 64);
+            long difference = getBits(bits, bit) ^ getBits(other.bits, otherBit);
+            if (chunk < 64)
+                difference &= (1L << chunk) - 1;
+            if (difference != 0)
+                return false;
+
+            bit += chunk;
+            otherBit += chunk;
+            remaining -= chunk;
+        }
+
+        // the escaped characters are stored as zero bits, so the bits of an escape equal to those of an 'a'
+        return escapesMatch(start, other, otherStart, count) && other.escapesMatch(otherStart, this, start, count);
+    }
+
+    /**
+     * @return True if the sequence contains some characters other than a, c, g and t.
+     */
+    public boolean hasEscapes()
+    {
+        return escapeCount > 0;
+    }
+
+    /**
+     * Append the given character to the end of this sequence.
+     *
+     * @param c The character to append.
+     * @return <code>this</code>.
+     */
+    public NucleotideSequence append(char c)
+    {
+        return appendSymbol(encode(c));
+    }
+
+    /**
+     * Append the given symbol to the end of this sequence.
+     *
+     * @param symbol The symbol to append (see {@link #encode(char)}).
+     * @return <code>this</code>.
+     */
+    public NucleotideSequence appendSymbol(int symbol)
+    {
+        reserve(0, 1);
+
+        final int position = offset + length;
+        if (symbol < ESCAPE_OFFSET) {
+            bits[position >>> 5] |= ((long) symbol) << ((position & 31) << 1);
+        } else {
+            addEscape(position, (char) (symbol - ESCAPE_OFFSET));
+        }
+        length++;
+
+        return this;
+    }
+
+    /**
+     * Append the given sequence to the end of this sequence.
+     *
+     * @param other The sequence to append.
+     * @return <code>this</code>.
+     */
+    public NucleotideSequence append(NucleotideSequence other)
+    {
+        reserve(0, other.length);
+
+        // read the other sequence only after reserve(), it may be this one
+        final int otherOffset = other.offset;
+        final int otherLength = other.length;
+        final int otherEscapes = other.escapeCount;
+
+        final int position = offset + length;
+        copyBases(other.bits, otherOffset, bits, position, otherLength);
+        for (int i = 0; i < otherEscapes; i++) {
+            addEscape(position + other.escapePositions[i] - otherOffset, other.escapeChars[i]);
+        }
+        length += otherLength;
+
+        return this;
+    }
+
+    /**
+     * Insert the given sequence before the start of this sequence.
+     *
+     * @param other The sequence to prepend.
+     * @return <code>this</code>.
+     */
+    public NucleotideSequence prepend(NucleotideSequence other)
+    {
+        if (other.length == 0)
+            return this;
+
+        reserve(other.length, 0);
+
+        // read the other sequence only after reserve(), it may be this one
+        final int otherOffset = other.offset;
+        final int otherLength = other.length;
+        final int otherEscapes = other.escapeCount;
+
+        final int position = offset - otherLength;
+        copyBases(other.bits, otherOffset, bits, position, otherLength);
+
+        if (otherEscapes > 0) {
+            final int[] newEscapePositions = new int[otherEscapes + escapeCount];
+            final char[] newEscapeChars = new char[newEscapePositions.length];
+            for (int i = 0; i < otherEscapes; i++) {
+                newEscapePositions[i] = position + other.escapePositions[i] - otherOffset;
+                newEscapeChars[i] = other.escapeChars[i];
+            }
+            System.arraycopy(escapePositions, 0, newEscapePositions, otherEscapes, escapeCount);
+            System.arraycopy(escapeChars, 0, newEscapeChars, otherEscapes, escapeCount);
+
+            escapePositions = newEscapePositions;
+            escapeChars = newEscapeChars;
+            escapeCount = newEscapePositions.length;
+        }
+
+        offset = position;
+        length += otherLength;
+
+        return this;
+    }
+
+    @Override
+    public NucleotideSequence subSequence(int start, int end)
+    {
+        if (start < 0 || end > length || start > end)
+            throw new IndexOutOfBoundsException("Range: [" + start + ", " + end + "), length: " + length);
+
+        // this sequence only writes outside of its bases and the view copies them before writing, so they are shared
+        final NucleotideSequence result = new NucleotideSequence(bits, offset + start, end - start);
+
+        if (escapeCount > 0) {
+            int i = Arrays.binarySearch(escapePositions, 0, escapeCount, offset + start);
+            if (i < 0)
+                i = -i - 1;
+            for (; i < escapeCount && escapePositions[i] < offset + end; i++) {
+                result.addEscape(escapePositions[i], escapeChars[i]);
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public String toString()
+    {
+        final StringBuilder result = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            result.append(charAt(i));
+        }
+        return result.toString();
+    }
+
+    /**
+     * Make sure there is free space for the given number of bases before and after the sequence, and that the bases
+     * aren't shared with other sequences.
+     * <p>
+     * The bases are moved to a new array at least twice as large, and if the sequence grows at its start, the free
+     * space is split evenly between both of its sides.
+     *
+     * @param before The number of bases to be prepended.
+     * @param after The number of bases to be appended.
+     */
+    private void reserve(int before, int after)
+    {
+        if (!shared && offset >= before && bits.length * BASES_PER_WORD - offset - length >= after)
+            return;
+
+        final int needed = before + length + after;
+        final int words = Math.max(wordsFor(needed), shared ? 1 : 2 * bits.length);
+        final int free = words * BASES_PER_WORD - needed;
+        final int newOffset = before + ((before > 0 || offset > 0) ? free / 2 : 0);
+
+        final long[] newBits = new long[words];
+        copyBases(bits, offset, newBits, newOffset, length);
+        for (int i = 0; i < escapeCount; i++) {
+            escapePositions[i] += newOffset - offset;
+        }
+
+        bits = newBits;
+        offset = newOffset;
+        shared = false;
+    }
+
+    /**
+     * Add an escaped character. The position must be greater than all existing escaped positions.
+     *
+     * @param position Position of the character in {@link #bits}.
+     * @param c The character.
+     */
+    private void addEscape(int position, char c)
+    {
+        if (escapeCount == escapePositions.length) {
+            escapePositions = Arrays.copyOf(escapePositions, Math.max(4, 2 * escapeCount));
+            escapeChars = Arrays.copyOf(escapeChars, escapePositions.length);
+        }
+        escapePositions[escapeCount] = position;
+        escapeChars[escapeCount] = c;
+        escapeCount++;
+    }
+
+    /**
+     * @param start Position of the first character of the region of this sequence.
+     * @param other The other sequence.
+     * @param otherStart Position of the first character of the region of the other sequence.
+     * @param count Length of the regions.
+     * @return True if the other sequence has the same characters at the positions of the escaped characters of this
+     *         region.
+     */
+    private boolean escapesMatch(int start, NucleotideSequence other, int otherStart, int count)
+    {
+        if (escapeCount == 0)
+            return true;
+
+        int i = Arrays.binarySearch(escapePositions, 0, escapeCount, offset + start);
+        if (i < 0)
+            i = -i - 1;
+        for (; i < escapeCount && escapePositions[i] < offset + start + count; i++) {
+            if (other.symbolAt(otherStart + escapePositions[i] - offset - start) != ESCAPE_OFFSET + escapeChars[i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param bits Packed bases.
+     * @param bit Index of the first bit to return.
+     * @return The 64 bits starting at the given one, the bits after the end of the array are zero.
+     */
+    private static long getBits(long[] bits, long bit)
+    {
+        final int word = (int) (bit >>> 6), shift = (int) (bit & 63);
+        long value = bits[word] >>> shift;
+        if (shift != 0 && word + 1 < bits.length)
+            value |= bits[word + 1] << (64 - shift);
+        return value;
+    }
+
+    /**
+     * @param bases Number of bases.
+     * @return Number of words needed to store the given number of bases.
+     */
+    private static int wordsFor(int bases)
+    {
+        return (bases + BASES_PER_WORD - 1) / BASES_PER_WORD;
+    }
+
+    /**
+     * Copy packed bases between arrays. The target range of the destination array has to be zeroed.
+     *
+     * @param src The source array.
+     * @param srcPos Index of the first base to copy.
+     * @param dst The destination array.
+     * @param dstPos Index of the first base to write to.
+     * @param count The number of bases to copy.
+     */
+    private static void copyBases(long[] src, int srcPos, long[] dst, int dstPos, int count)
+    {
+        long srcBit = 2L * srcPos;
+        long dstBit = 2L * dstPos;
+        long remaining = 2L * count;
+
+        while (remaining > 0) {
+            // copy at most up to the end of the current destination word
+            final int dstOffset = (int) (dstBit & 63);
+            final int chunk = (int) Math.min(remaining, 64 - dstOffset);
+
+            final int srcWord = (int) (srcBit >>> 6);
+            final int srcOffset = (int) (srcBit & 63);
+            long value = src[srcWord] >>> srcOffset;
+            if (srcOffset != 0 && srcOffset + chunk > 64)
+                value |= src[srcWord + 1] << (64 - srcOffset);
+            if (chunk < 64)
+                value &= (1L << chunk) - 1;
+
+            dst[(int) (dstBit >>> 6)] |= value << dstOffset;
+
+            srcBit += chunk;
+            dstBit += chunk;
+            remaining -= chunk;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/**  */
+package cz.cuni.mff.peckam.bioinf.alignments;
+
+import jdk.incubator.foreign.MemoryAccess;
+import jdk.incubator.foreign.MemorySegment;
+import jdk.incubator.foreign.ResourceScope;
+
+/**
+ * DP table of int values stored in native memory by the (incubating) Foreign Memory API, so that the huge tables are
+ * neither scanned by the garbage collector nor limited by the maximum length of the Java arrays.
+ * <p>
+ * The values are primitive ints stored row by row (a row are the items with the same <code>j</code>). The traceback
+ * directions are packed to 2 bits per item, 32 items per word, every row starting at a new word. The memory belongs to
+ * a shared resource scope, so that the tiles of the table can be computed by other threads, and is freed by
+ * {@link #release()}.
+ * <p>
+ * This class may only be loaded when the <code>jdk.incubator.foreign</code> module is available (see
+ * {@link DynamicProgrammingProblem#isOffHeapStorageAvailable()}).
+ *
+ * @author Martin Pecka
+ */
+final class OffHeapIntTable implements IntDynamicProgrammingTable
+{
+    /** The scope owning the memory of the table. */
+    private final ResourceScope scope;
+
+    /** The values. */
+    private final MemorySegment values;
+
+    /** The packed traceback directions. */
+    private final MemorySegment traceback;
+
+    /** Number of items in a row. */
+    private final long          width;
+
+    /** Number of words of the traceback occupied by one row. */
+    private final long          rowWords;
+
+    /**
+     * Allocate the table. The values are undefined and the traceback directions are all <code>TRACEBACK_NONE</code>.
+     *
+     * @param width The first dimension of the table.
+     * @param height The second dimension of the table.
+     */
+    OffHeapIntTable(int width, int height)
+    {
+        this.width = width;
+        this.rowWords = (width + 31) >>> 5;
+        this.scope = ResourceScope.newSharedScope();
+        // native segments are zeroed when allocated
+        this.values = MemorySegment.allocateNative(4L * width * height, 8, scope);
+        this.traceback = MemorySegment.allocateNative(8L * rowWords * height, 8, scope);
+    }
+
+    @Override
+    public Integer getValue(int i, int j)
+    {
+        return getInt(i, j);
+    }
+
+    @Override
+    public void setValue(int i, int j, Integer value)
+    {
+        setInt(i, j, value);
+    }
+
+    @Override
+    public int getInt(int i, int j)
+    {
+        return MemoryAccess.getIntAtIndex(values, j * width + i);
+    }
+
+    @Override
+    public void setInt(int i, int j, int value)
+    {
+        MemoryAccess.setIntAtIndex(values, j * width + i, value);
+    }
+
+    @Override
+    public int getTraceback(int i, int j)
+    {
+        return (int) (MemoryAccess.getLongAtIndex(traceback, j * rowWords + (i >>> 5)) >>> ((i & 31) << 1)) & 3;
+    }
+
+    @Override
+    public void setTraceback(int i, int j, int direction)
+    {
+        final long word = j * rowWords + (i >>> 5);
+        final int shift = (i & 31) << 1;
+        final long bits = MemoryAccess.getLongAtIndex(traceback, word);
+        MemoryAccess.setLongAtIndex(traceback, word, (bits & ~(3L << shift)) | (((long) direction) << shift));
+    }
+
+    @Override
+    public void release()
+    {
+        scope.close();
+    }
+}
@@ -1,9 +1,12 @@
 package cz.cuni.mff.peckam.bioinf.alignments;
 
-import java.util.List;
-
 /**
  * Overlap sequence alignment.
+ * <p>
+ * Subclasses may restrict the computation to a part of every row of the DP table by overriding
+ * {@link #getRowStart(int)} and {@link #getRowEnd(int)}. The items outside of these bounds are treated as unreachable.
+ * They may also disallow seq2 to overhang the start or end of seq1 by overriding {@link #isSeq1StartFree()} and
+ * {@link #isSeq1EndFree()}.
  * 
  * @author Martin Pecka
  */
@@ -11,7 +14,13 @@ public class OverlapAlignmentProblem extends AlignmentProblem
 {
 
     /** Coordinates of the item with best score. */
-    private Tuple<Integer> bestScoreCoords = null;
+    private Tuple<Integer>   bestScoreCoords = null;
+
+    /** Encoded traceback start of the item (1, 1), which always stops the traceback. */
+    static final int         START_AFTER_INIT = Integer.MIN_VALUE;
+
+    /** Value of the items which are not computed. Low enough to never win, high enough not to overflow. */
+    protected static final int UNREACHABLE    = Integer.MIN_VALUE / 2;
 
     /**
      * Find the best alignment which contains the end of the one sequence and the start of the other sequence (or one
@@ -23,7 +32,7 @@ public class OverlapAlignmentProblem extends AlignmentProblem
      * @param mismatch Penalty for mismatch compounds. Negative value.
      * @param gap Penalty for gap. Negative value.
      */
-    public OverlapAlignmentProblem(List<Character> seq1, List<Character> seq2, int match, int mismatch, int gap)
+    public OverlapAlignmentProblem(NucleotideSequence seq1, NucleotideSequence seq2, int match, int mismatch, int gap)
     {
         super(seq1, seq2, new LinearScoringMatrix<Character>(match, mismatch, gap));
     }
@@ -33,61 +42,355 @@ public class OverlapAlignmentProblem extends AlignmentProblem
     {
         for (int i = 0; i < width; i++) {
             // 0 due to overlap alignment - we don't penalize gaps at the start of a sequence
-            valuesTable[i][0] = 0;
+            setIntItem(i, 0, 0);
 
             if (i > 0)
-                tracebackTable[i][0] = new Tuple<>(i - 1, 0);
+                setTraceback(i, 0, TRACEBACK_LEFT);
         }
 
         // j = 1, because position (0,0) has already been set
+        final boolean seq1StartFree = isSeq1StartFree();
         for (int j = 1; j < height; j++) {
             // 0 due to overlap alignment - we don't penalize gaps at the start of a sequence
-            valuesTable[0][j] = 0;
-            tracebackTable[0][j] = new Tuple<>(0, j - 1);
+            setIntItem(0, j, seq1StartFree ? 0 : j * scoringMatrix.getGapExtendPenalty());
+            setTraceback(0, j, TRACEBACK_UP);
         }
     }
 
+    /**
+     * @return True if seq2 may start before the start of seq1 for free. Otherwise the gaps before the start of seq1 are
+     *         penalized as in the global alignment.
+     */
+    protected boolean isSeq1StartFree()
+    {
+        return true;
+    }
+
+    /**
+     * @return True if seq2 may continue after the end of seq1 (the alignment may end in the last column of the table).
+     *         Otherwise the alignment has to end in the last row of the table.
+     */
+    protected boolean isSeq1EndFree()
+    {
+        return true;
+    }
+
+    /**
+     * Return the first item of the given row of the DP table to compute.
+     * 
+     * @param j The second coordinate of the row.
+     * @return The first coordinate of the first item to compute (at least 1).
+     */
+    protected int getRowStart(int j)
+    {
+        return 1;
+    }
+
+    /**
+     * Return the last item of the given row of the DP table to compute.
+     * 
+     * @param j The second coordinate of the row.
+     * @return The first coordinate of the last item to compute (at most {@link #width}<code> - 1</code>).
+     */
+    protected int getRowEnd(int j)
+    {
+        return width - 1;
+    }
+
+    /**
+     * @param i The first coordinate of the item.
+     * @param j The second coordinate of the item.
+     * @return True if the item is an initialization one or if it lies in the computed part of its row.
+     */
+    protected final boolean isComputed(int i, int j)
+    {
+        return i == 0 || j == 0 || (i >= getRowStart(j) && i <= getRowEnd(j));
+    }
+
+    /**
+     * @param i The first coordinate of the item.
+     * @param j The second coordinate of the item.
+     * @return The value of the item, or {@link #UNREACHABLE} if it is not computed.
+     */
+    private int getValue(int i, int j)
+    {
+        return isComputed(i, j) ? getIntItem(i, j) : UNREACHABLE;
+    }
+
+    @Override
+    protected Tuple<Integer> nextCoords(Tuple<Integer> coords)
+    {
+        int i = coords.elem1 + 1, j = coords.elem2;
+        while (j < height) {
+            final int rowStart = Math.max(i, getRowStart(j));
+            if (rowStart <= getRowEnd(j))
+                return new Tuple<>(rowStart, j);
+
+            // not 0, since the first column is filled in init()
+            i = 1;
+            j++;
+        }
+
+        return new Tuple<>(1, j);
+    }
+
+    @Override
+    Tuple<Integer> computeRow(Tuple<Integer> coords, int j, int endI)
+    {
+        if (coords.elem2 != j || coords.elem1 >= endI)
+            return coords;
+
+        // the items of a row are computed from the given one to the row end
+        final int end = Math.min(endI, getRowEnd(j) + 1);
+        int i = coords.elem1;
+        do {
+            setIntItem(i, j, computeIntValueAndSaveTraceback(i, j));
+            i++;
+        } while (i < end);
+
+        return nextCoords(new Tuple<>(i - 1, j));
+    }
+
     @Override
     protected Integer computeValueAndSaveTraceback(Tuple<Integer> coords)
     {
-        final int i = coords.elem1, j = coords.elem2;
+        return computeIntValueAndSaveTraceback(coords.elem1, coords.elem2);
+    }
 
+    /**
+     * Compute the value of the given item and save its traceback direction.
+     * 
+     * @param i The first coordinate of the item.
+     * @param j The second coordinate of the item.
+     * @return The computed value.
+     */
+    private int computeIntValueAndSaveTraceback(int i, int j)
+    {
         // the -1 in seq1/2 indices is due to the zeroth initialization column and row
-        final int seq1ToSeq2 = valuesTable[i - 1][j - 1] + scoringMatrix.getScore(seq1.get(i - 1), seq2.get(j - 1));
-        final int seq1ToGap = valuesTable[i - 1][j] + scoringMatrix.getGapExtendPenalty();
-        final int gapToSeq2 = valuesTable[i][j - 1] + scoringMatrix.getGapExtendPenalty();
+        final int seq1ToSeq2 = getValue(i - 1, j - 1) + scoringMatrix.getScore(seq1.charAt(i - 1), seq2.charAt(j - 1));
+        final int seq1ToGap = getValue(i - 1, j) + scoringMatrix.getGapExtendPenalty();
+        final int gapToSeq2 = getValue(i, j - 1) + scoringMatrix.getGapExtendPenalty();
 
         int max;
         if (seq1ToSeq2 >= seq1ToGap && seq1ToSeq2 >= gapToSeq2) {
-            tracebackTable[i][j] = new Tuple<>(i - 1, j - 1);
+            setTraceback(i, j, TRACEBACK_DIAGONAL);
             max = seq1ToSeq2;
         } else if (seq1ToGap >= seq1ToSeq2 && seq1ToGap >= gapToSeq2) {
-            tracebackTable[i][j] = new Tuple<>(i - 1, j);
+            setTraceback(i, j, TRACEBACK_LEFT);
             max = seq1ToGap;
         } else {
-            tracebackTable[i][j] = new Tuple<>(i, j - 1);
+            setTraceback(i, j, TRACEBACK_UP);
             max = gapToSeq2;
         }
 
         return max;
     }
 
+    /**
+     * @return True if {@link #getRowStart(int)} or {@link #getRowEnd(int)} restrict the computation to a part of the
+     *         table.
+     */
+    protected boolean hasRowBounds()
+    {
+        return false;
+    }
+
+    @Override
+    protected long getComputedCells()
+    {
+        if (!hasRowBounds())
+            return super.getComputedCells();
+
+        // the zeroth row and column are filled by init()
+        long result = width + height - 1;
+        for (int j = 1; j < height; j++) {
+            result += Math.max(0, getRowEnd(j) - getRowStart(j) + 1);
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The computation is recorded as an {@link AlignmentEvent} if the event is enabled in the flight recorder.
+     */
+    @Override
+    public AlignmentScore computeScore()
+    {
+        final AlignmentEvent event = new AlignmentEvent();
+        event.begin();
+
+        final boolean striped = isVectorizedScoring() && !hasRowBounds() && width > 1 && height > 1;
+        final AlignmentScore result = striped ? new StripedOverlapAlignment(seq1, seq2, scoringMatrix,
+                isSeq1StartFree(), isSeq1EndFree()).computeScore() : computeScoreByRows();
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.length1 = seq1.length();
+            event.length2 = seq2.length();
+            event.cells = getComputedCells();
+            event.kernel = striped ? AlignmentEvent.KERNEL_STRIPED : (hasRowBounds() ? AlignmentEvent.KERNEL_BANDED
+                    : AlignmentEvent.KERNEL_SCALAR);
+            event.commit();
+        }
+
+        return result;
+    }
+
+    /**
+     * Compute the score as {@link #computeScore()} does, keeping only two rows of the DP table.
+     * 
+     * @return The score of the alignment.
+     */
+    private AlignmentScore computeScoreByRows()
+    {
+        final boolean seq1StartFree = isSeq1StartFree(), seq1EndFree = isSeq1EndFree();
+
+        final int gap = scoringMatrix.getGapExtendPenalty();
+
+        final AlignmentWorkspace workspace = AlignmentWorkspace.get();
+
+        final char[] chars1 = workspace.getChars(AlignmentWorkspace.SEQUENCE_CHARS, seq1.length());
+        for (int i = 0; i < seq1.length(); i++)
+            chars1[i] = seq1.charAt(i);
+
+        // only the previous and the current row (along seq1) of the DP table are kept
+        int[] previous = workspace.getInts(AlignmentWorkspace.PREVIOUS_ROW, width);
+        int[] current = workspace.getInts(AlignmentWorkspace.CURRENT_ROW, width);
+        // the encoded coordinates where the traceback from the corresponding item would stop (see encodeStart())
+        int[] previousStart = workspace.getInts(AlignmentWorkspace.PREVIOUS_STARTS, width);
+        int[] currentStart = workspace.getInts(AlignmentWorkspace.CURRENT_STARTS, width);
+
+        for (int i = 0; i < width; i++) {
+            previous[i] = 0;
+            previousStart[i] = encodeStart(i, 0);
+        }
+
+        // the best item in the last column has to be searched for during the computation
+        int bestScore = seq1EndFree ? previous[width - 1] : Integer.MIN_VALUE;
+        int bestStart = previousStart[width - 1];
+        int bestI = width - 1, bestJ = 0;
+
+        for (int j = 1; j < height; j++) {
+            final Character char2 = seq2.charAt(j - 1);
+            final int rowStart = getRowStart(j), rowEnd = getRowEnd(j);
+
+            current[0] = seq1StartFree ? 0 : j * gap;
+            currentStart[0] = encodeStart(0, j);
+            // the items just outside of the computed part of the row may still hold values of older rows
+            if (rowStart > 1 && rowStart - 1 < width)
+                current[rowStart - 1] = UNREACHABLE;
+            if (rowEnd + 1 < width && rowEnd + 1 > 0)
+                current[rowEnd + 1] = UNREACHABLE;
+
+            for (int i = rowStart; i <= rowEnd; i++) {
+                // the same as in computeValueAndSaveTraceback(), including the preference of equal values
+                final int seq1ToSeq2 = previous[i - 1] + scoringMatrix.getScore(chars1[i - 1], char2);
+                final int seq1ToGap = current[i - 1] + gap;
+                final int gapToSeq2 = previous[i] + gap;
+
+                if (seq1ToSeq2 >= seq1ToGap && seq1ToSeq2 >= gapToSeq2) {
+                    current[i] = seq1ToSeq2;
+                    currentStart[i] = previousStart[i - 1];
+                } else if (seq1ToGap >= seq1ToSeq2 && seq1ToGap >= gapToSeq2) {
+                    current[i] = seq1ToGap;
+                    currentStart[i] = currentStart[i - 1];
+                } else {
+                    current[i] = gapToSeq2;
+                    currentStart[i] = previousStart[i];
+                }
+
+                if (i == 1 && j == 1)
+                    currentStart[i] = START_AFTER_INIT;
+            }
+
+            if (seq1EndFree && isComputed(width - 1, j) && current[width - 1] > bestScore) {
+                bestScore = current[width - 1];
+                bestStart = currentStart[width - 1];
+                bestI = width - 1;
+                bestJ = j;
+            }
+
+            final int[] swap = previous;
+            previous = current;
+            current = swap;
+            final int[] swapStart = previousStart;
+            previousStart = currentStart;
+            currentStart = swapStart;
+        }
+
+        // the last row is now in previous
+        for (int i = 0; i < width; i++) {
+            if (isComputed(i, height - 1) && previous[i] > bestScore) {
+                bestScore = previous[i];
+                bestStart = previousStart[i];
+                bestI = i;
+                bestJ = height - 1;
+            }
+        }
+
+        return createScore(bestScore, bestStart, bestI, bestJ, seq1.length(), seq2.length());
+    }
+
+    /**
+     * Create the score of an alignment with the given end and encoded start.
+     * 
+     * @param score Score of the alignment.
+     * @param encodedStart The start of the alignment encoded by {@link #encodeStart(int, int)}.
+     * @param end1 End of the alignment in the first sequence.
+     * @param end2 End of the alignment in the second sequence.
+     * @param length1 Length of the first sequence.
+     * @param length2 Length of the second sequence.
+     * @return The score.
+     */
+    static AlignmentScore createScore(int score, int encodedStart, int end1, int end2, int length1, int length2)
+    {
+        final int start1, start2;
+        if (encodedStart == START_AFTER_INIT) {
+            start1 = 1;
+            start2 = 1;
+        } else if (encodedStart >= 0) {
+            start1 = encodedStart;
+            start2 = 0;
+        } else {
+            start1 = 0;
+            start2 = -encodedStart;
+        }
+
+        return new AlignmentScore(score, start1, start2, end1, end2, length1, length2);
+    }
+
+    /**
+     * Encode the coordinates of an item where traceback stops to a single int.
+     * <p>
+     * Items with <code>j == 0</code> are encoded as non-negative numbers, items with <code>i == 0</code> as negative
+     * numbers and the item (1, 1) as {@link #START_AFTER_INIT}.
+     * 
+     * @param i The first coordinate.
+     * @param j The second coordinate. Either <code>i</code> or <code>j</code> has to be zero.
+     * @return The encoded coordinates.
+     */
+    static int encodeStart(int i, int j)
+    {
+        return j == 0 ? i : -j;
+    }
+
     @Override
     protected Tuple<Integer> getTracebackLastCoords()
     {
         // we start the traceback at the end of any word
         if (bestScoreCoords == null) {
             int bestScore = Integer.MIN_VALUE;
-            for (int i = 0; i < height; i++) {
-                if (valuesTable[width - 1][i] > bestScore) {
+            for (int i = 0; i < height && isSeq1EndFree(); i++) {
+                if (isComputed(width - 1, i) && getIntItem(width - 1, i) > bestScore) {
                     bestScoreCoords = new Tuple<>(width - 1, i);
-                    bestScore = valuesTable[width - 1][i];
+                    bestScore = getIntItem(width - 1, i);
                 }
             }
             for (int i = 0; i < width; i++) {
-                if (valuesTable[i][height - 1] > bestScore) {
+                if (isComputed(i, height - 1) && getIntItem(i, height - 1) > bestScore) {
                     bestScoreCoords = new Tuple<>(i, height - 1);
-                    bestScore = valuesTable[i][height - 1];
+                    bestScore = getIntItem(i, height - 1);
                 }
             }
         }
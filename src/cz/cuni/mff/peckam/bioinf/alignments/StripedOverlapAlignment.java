@@ -0,0 +1,255 @@
+/**  */
+package cz.cuni.mff.peckam.bioinf.alignments;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The score of the overlap alignment computed by Farrar's striped SIMD algorithm using the Vector API.
+ * <p>
+ * The DP table is computed one column (all items with the same <code>i</code>) at a time. The column is split to
+ * <code>L</code> (the number of vector lanes) consecutive stripes of the second sequence and one vector holds the items
+ * at the same offset in all stripes, so the dependencies inside a vector go only from one stripe to the next. The gap
+ * contributions crossing the stripes are corrected by a second, lazy pass, which usually ends after a few vectors.
+ * <p>
+ * The lanes are 32-bit, because each item carries both its score and the encoded start of its alignment (which is
+ * needed to produce the same {@link AlignmentScore} as {@link OverlapAlignmentProblem#computeScore()}, including the
+ * choice between equally scored alignments).
+ * <p>
+ * This class may only be loaded when the <code>jdk.incubator.vector</code> module is available (see
+ * {@link AlignmentProblem#isVectorizedScoringAvailable()}).
+ *
+ * @author Martin Pecka
+ */
+final class StripedOverlapAlignment
+{
+    /** The used vector shape. */
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    /** Number of lanes in a vector. */
+    private static final int                    LANES   = SPECIES.length();
+
+    /** The first sequence. */
+    private final NucleotideSequence            seq1;
+    /** The second sequence. */
+    private final NucleotideSequence            seq2;
+    /** The scoring matrix. */
+    private final ScoringMatrix<Character>      scoringMatrix;
+
+    /** See {@link OverlapAlignmentProblem#isSeq1StartFree()}. */
+    private final boolean                       seq1StartFree;
+
+    /** See {@link OverlapAlignmentProblem#isSeq1EndFree()}. */
+    private final boolean                       seq1EndFree;
+
+    /** Number of vectors per column. */
+    private final int                           segments;
+
+    /** The workspace of the computing thread, which holds the rows and the profiles of the symbols a, c, g, t. */
+    private final AlignmentWorkspace            workspace = AlignmentWorkspace.get();
+
+    /** The striped query profiles of the symbols a, c, g, t (borrowed from the workspace when first needed). */
+    private final int[][]                       profiles = new int[NucleotideSequence.ESCAPE_OFFSET][];
+
+    /** The striped query profiles of the escaped symbols. */
+    private final Map<Integer, int[]>           escapedProfiles = new HashMap<>();
+
+    /**
+     * @param seq1 The first sequence (non-empty).
+     * @param seq2 The second sequence (non-empty).
+     * @param scoringMatrix The scoring matrix.
+     * @param seq1StartFree See {@link OverlapAlignmentProblem#isSeq1StartFree()}.
+     * @param seq1EndFree See {@link OverlapAlignmentProblem#isSeq1EndFree()}.
+     */
+    StripedOverlapAlignment(NucleotideSequence seq1, NucleotideSequence seq2, ScoringMatrix<Character> scoringMatrix,
+            boolean seq1StartFree, boolean seq1EndFree)
+    {
+        this.seq1 = seq1;
+        this.seq2 = seq2;
+        this.scoringMatrix = scoringMatrix;
+        this.seq1StartFree = seq1StartFree;
+        this.seq1EndFree = seq1EndFree;
+        this.segments = (seq2.length() + LANES - 1) / LANES;
+    }
+
+    /**
+     * @return The score of the best overlap alignment (the same as {@link OverlapAlignmentProblem#computeScore()}).
+     */
+    AlignmentScore computeScore()
+    {
+        final int length1 = seq1.length(), length2 = seq2.length();
+        final int size = segments * LANES;
+        final int gap = scoringMatrix.getGapExtendPenalty();
+
+        final IntVector gaps = IntVector.broadcast(SPECIES, gap);
+        final IntVector unreachable = IntVector.broadcast(SPECIES, OverlapAlignmentProblem.UNREACHABLE);
+        final IntVector zeros = IntVector.zero(SPECIES);
+
+        // scores and encoded starts of the previous and current column, the vector s holds the positions
+        // s, s + segments, s + 2*segments, ... of the second sequence
+        int[] previous = workspace.getInts(AlignmentWorkspace.PREVIOUS_ROW, size);
+        int[] current = workspace.getInts(AlignmentWorkspace.CURRENT_ROW, size);
+        int[] previousStart = workspace.getInts(AlignmentWorkspace.PREVIOUS_STARTS, size);
+        int[] currentStart = workspace.getInts(AlignmentWorkspace.CURRENT_STARTS, size);
+        // the padding positions after the end of the second sequence never affect the real ones, they are only
+        // cleared so that the results don't depend on the previous alignments of the thread
+        Arrays.fill(previous, 0, size, 0);
+        Arrays.fill(previousStart, 0, size, 0);
+        for (int q = 0; q < length2; q++) {
+            previous[stripedIndex(q)] = seq1StartFree ? 0 : (q + 1) * gap;
+            previousStart[stripedIndex(q)] = OverlapAlignmentProblem.encodeStart(0, q + 1);
+        }
+
+        // the last row (j = length2) is the only one whose items are needed from the inner columns
+        final int lastIndex = stripedIndex(length2 - 1);
+        int lastRowBest = previous[lastIndex], lastRowBestI = 0;
+        int lastRowBestStart = OverlapAlignmentProblem.encodeStart(0, length2);
+
+        for (int i = 1; i <= length1; i++) {
+            final int[] profile = getProfile(seq1.symbolAt(i - 1));
+
+            // diagonal predecessors of the first vector are the last items of the previous stripes
+            IntVector diagonal = zeros.slice(LANES - 1, IntVector.fromArray(SPECIES, previous, size - LANES));
+            IntVector diagonalStart = IntVector.broadcast(SPECIES, OverlapAlignmentProblem.encodeStart(i - 1, 0))
+                    .slice(LANES - 1, IntVector.fromArray(SPECIES, previousStart, size - LANES));
+
+            // gaps in the first sequence, only the item (i, 0) is known to precede the first vector
+            IntVector up = unreachable.withLane(0, gap);
+            IntVector upStart = zeros.withLane(0, OverlapAlignmentProblem.encodeStart(i, 0));
+
+            for (int s = 0, offset = 0; s < segments; s++, offset += LANES) {
+                final IntVector left = IntVector.fromArray(SPECIES, previous, offset);
+                final IntVector leftStart = IntVector.fromArray(SPECIES, previousStart, offset);
+
+                // prefer the diagonal on ties, then the left item, then the upper one (as the scalar version does)
+                final IntVector seq1ToSeq2 = diagonal.add(IntVector.fromArray(SPECIES, profile, offset));
+                final IntVector seq1ToGap = left.add(gaps);
+                final VectorMask<Integer> leftWins = seq1ToGap.compare(VectorOperators.GT, seq1ToSeq2);
+                IntVector value = seq1ToSeq2.blend(seq1ToGap, leftWins);
+                IntVector start = diagonalStart.blend(leftStart, leftWins);
+
+                final VectorMask<Integer> upWins = up.compare(VectorOperators.GT, value);
+                value = value.blend(up, upWins);
+                start = start.blend(upStart, upWins);
+
+                if (i == 1 && s == 0)
+                    start = start.withLane(0, OverlapAlignmentProblem.START_AFTER_INIT);
+
+                value.intoArray(current, offset);
+                start.intoArray(currentStart, offset);
+
+                up = value.add(gaps);
+                upStart = start;
+                diagonal = left;
+                diagonalStart = leftStart;
+            }
+
+            // the lazy pass: propagate the gaps from the end of each stripe to the next one
+            up = unreachable.slice(LANES - 1, up);
+            upStart = zeros.slice(LANES - 1, upStart);
+            for (int s = 0;;) {
+                final int offset = s * LANES;
+                final IntVector value = IntVector.fromArray(SPECIES, current, offset);
+                final VectorMask<Integer> upWins = up.compare(VectorOperators.GT, value);
+                if (!upWins.anyTrue())
+                    break;
+
+                value.blend(up, upWins).intoArray(current, offset);
+                IntVector.fromArray(SPECIES, currentStart, offset).blend(upStart, upWins)
+                        .intoArray(currentStart, offset);
+
+                up = up.add(gaps);
+                if (++s == segments) {
+                    s = 0;
+                    up = unreachable.slice(LANES - 1, up);
+                    upStart = zeros.slice(LANES - 1, upStart);
+                }
+            }
+
+            if (current[lastIndex] > lastRowBest) {
+                lastRowBest = current[lastIndex];
+                lastRowBestStart = currentStart[lastIndex];
+                lastRowBestI = i;
+            }
+
+            final int[] swap = previous;
+            previous = current;
+            current = swap;
+            final int[] swapStart = previousStart;
+            previousStart = currentStart;
+            currentStart = swapStart;
+        }
+
+        // the same order as OverlapAlignmentProblem: the last column first, then the last row
+        int bestScore = seq1EndFree ? 0 : Integer.MIN_VALUE;
+        int bestStart = OverlapAlignmentProblem.encodeStart(length1, 0), bestI = length1, bestJ = 0;
+        for (int q = 0; q < length2 && seq1EndFree; q++) {
+            final int index = stripedIndex(q);
+            if (previous[index] > bestScore) {
+                bestScore = previous[index];
+                bestStart = previousStart[index];
+                bestJ = q + 1;
+            }
+        }
+        if (lastRowBest > bestScore) {
+            bestScore = lastRowBest;
+            bestStart = lastRowBestStart;
+            bestI = lastRowBestI;
+            bestJ = length2;
+        }
+
+        return OverlapAlignmentProblem.createScore(bestScore, bestStart, bestI, bestJ, length1, length2);
+    }
+
+    /**
+     * @param q Position in the second sequence.
+     * @return Index of the position in the striped arrays.
+     */
+    private int stripedIndex(int q)
+    {
+        return (q % segments) * LANES + q / segments;
+    }
+
+    /**
+     * Return the striped scores of aligning the given symbol to all positions of the second sequence.
+     *
+     * @param symbol Symbol of the first sequence.
+     * @return The striped profile.
+     */
+    private int[] getProfile(int symbol)
+    {
+        final boolean escaped = symbol >= NucleotideSequence.ESCAPE_OFFSET;
+        int[] profile;
+        if (!escaped)
+            profile = profiles[symbol];
+        else
+            profile = escapedProfiles.get(symbol);
+
+        if (profile == null) {
+            // the padding positions after the end of the second sequence get 0, they never affect the real ones
+            final int size = segments * LANES;
+            if (!escaped) {
+                profile = workspace.getInts(AlignmentWorkspace.PROFILES + symbol, size);
+                Arrays.fill(profile, 0, size, 0);
+            } else {
+                profile = new int[size];
+            }
+
+            final Character c = NucleotideSequence.decode(symbol);
+            for (int q = 0; q < seq2.length(); q++)
+                profile[stripedIndex(q)] = scoringMatrix.getScore(c, seq2.charAt(q));
+
+            if (!escaped)
+                profiles[symbol] = profile;
+            else
+                escapedProfiles.put(symbol, profile);
+        }
+        return profile;
+    }
+}
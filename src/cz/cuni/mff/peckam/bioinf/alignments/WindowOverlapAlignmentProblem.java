@@ -0,0 +1,88 @@
+/**  */
+package cz.cuni.mff.peckam.bioinf.alignments;
+
+/**
+ * Overlap sequence alignment of the second sequence to a window of a longer first sequence.
+ * <p>
+ * The second sequence may overhang only those edges of the window which are also the edges of the whole first
+ * sequence. At the other edges the overhangs are penalized as gaps, so the alignment stays inside the window and its
+ * score can be translated to the whole sequence by {@link #translate(AlignmentScore)}.
+ *
+ * @author Martin Pecka
+ */
+public class WindowOverlapAlignmentProblem extends OverlapAlignmentProblem
+{
+    /** Position of the window's start in the whole first sequence. */
+    private final int     windowStart;
+
+    /** Length of the whole first sequence. */
+    private final int     sequenceLength;
+
+    /** True if the window starts at the start of the whole first sequence. */
+    private final boolean startFree;
+
+    /** True if the window ends at the end of the whole first sequence. */
+    private final boolean endFree;
+
+    /**
+     * Align the second sequence to the given window of the first sequence.
+     *
+     * @param sequence The whole first sequence.
+     * @param windowStart Position of the first character of the window.
+     * @param windowEnd Position after the last character of the window.
+     * @param seq2 The second sequence.
+     * @param match The bonus for matching compounds.
+     * @param mismatch Penalty for mismatch compounds. Negative value.
+     * @param gap Penalty for gap. Negative value.
+     */
+    public WindowOverlapAlignmentProblem(NucleotideSequence sequence, int windowStart, int windowEnd,
+            NucleotideSequence seq2, int match, int mismatch, int gap)
+    {
+        super(sequence.subSequence(windowStart, windowEnd), seq2, match, mismatch, gap);
+
+        this.windowStart = windowStart;
+        this.sequenceLength = sequence.length();
+        this.startFree = windowStart == 0;
+        this.endFree = windowEnd == sequence.length();
+    }
+
+    @Override
+    protected boolean isSeq1StartFree()
+    {
+        return startFree;
+    }
+
+    @Override
+    protected boolean isSeq1EndFree()
+    {
+        return endFree;
+    }
+
+    /**
+     * Translate a score computed by this problem to the coordinates of the whole first sequence.
+     *
+     * @param windowScore The score computed by {@link #computeScore()}.
+     * @return The same score with the coordinates of the whole first sequence.
+     */
+    public AlignmentScore translate(AlignmentScore windowScore)
+    {
+        return translate(windowScore, windowStart, sequenceLength, seq2.length());
+    }
+
+    /**
+     * Translate a score computed for a window to the coordinates of the whole first sequence.
+     *
+     * @param windowScore The score computed for the window.
+     * @param windowStart Position of the first character of the window.
+     * @param sequenceLength Length of the whole first sequence.
+     * @param length2 Length of the second sequence.
+     * @return The same score with the coordinates of the whole first sequence.
+     */
+    public static AlignmentScore translate(AlignmentScore windowScore, int windowStart, int sequenceLength,
+            int length2)
+    {
+        return new AlignmentScore(windowScore.getScore(), windowScore.getStart1() + windowStart,
+                windowScore.getStart2(), windowScore.getEnd1() + windowStart, windowScore.getEnd2(), sequenceLength,
+                length2);
+    }
+}
@@ -0,0 +1,281 @@
+/**  */
+package cz.cuni.mff.peckam.bioinf.superstring;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import cz.cuni.mff.peckam.bioinf.alignments.AlignmentScore;
+import cz.cuni.mff.peckam.bioinf.alignments.NucleotideSequence;
+
+/**
+ * A bounded cache of the scores of aligning reads to windows of the consensus sequence.
+ * <p>
+ * The scores are keyed by the read, the content of the window, whether the window starts or ends at the end of the
+ * consensus, and the scoring parameters, so that an alignment to a consensus end that didn't change since the last
+ * iteration doesn't have to be computed again. The scores are stored in the coordinates of the window.
+ * <p>
+ * The least recently used scores are evicted when the estimated size of the entries (including the copies of their
+ * windows) exceeds the memory budget. The cache is thread-safe.
+ *
+ * @author Martin Pecka
+ */
+public class AlignmentCache
+{
+    /** The default memory budget in bytes. */
+    public static final long                         DEFAULT_MEMORY_BUDGET = 64L << 20;
+
+    /**
+     * Estimated number of bytes taken by an entry without the bases of its window. The sizes are those of a 64-bit JVM
+     * with compressed references (12 bytes of object header, 4 bytes per reference, objects aligned to 8 bytes):
+     * <ul>
+     * <li>the key: 2 references, a long, 4 ints and 2 booleans, 48 bytes,</li>
+     * <li>the copy of the window: 3 references, 3 ints and a boolean, 40 bytes,</li>
+     * <li>the headers of its bases array and of its empty escape arrays, 3 times 16 bytes,</li>
+     * <li>the score: 7 ints, 40 bytes,</li>
+     * <li>the entry of the map: 5 references and an int, 40 bytes,</li>
+     * <li>the slots of the hash table of the map, which is 3/8 to 3/4 full, about 2 references, 8 bytes.</li>
+     * </ul>
+     */
+    private static final int                         ENTRY_SIZE            = 48 + 40 + 3 * 16 + 40 + 40 + 8;
+
+    /** The approximate number of bytes the entries may take. */
+    private final long                               memoryBudget;
+
+    /** The estimated number of bytes taken by the entries. */
+    private long                                     usedBytes             = 0;
+
+    /** The entries in the order of their use. */
+    private final LinkedHashMap<Key, AlignmentScore> entries               = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Number of lookups which found a score. */
+    private long                                     hits                  = 0;
+
+    /** Number of lookups which didn't find a score. */
+    private long                                     misses                = 0;
+
+    /**
+     * Create the cache with the default memory budget.
+     */
+    public AlignmentCache()
+    {
+        this(DEFAULT_MEMORY_BUDGET);
+    }
+
+    /**
+     * @param memoryBudget The approximate number of bytes the cache may take.
+     */
+    public AlignmentCache(long memoryBudget)
+    {
+        if (memoryBudget < ENTRY_SIZE)
+            throw new IllegalArgumentException("The memory budget has to be at least " + ENTRY_SIZE + " bytes.");
+
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Find the score of the alignment.
+     *
+     * @param key The key of the alignment.
+     * @return The score in the coordinates of the window, or <code>null</code> if it isn't cached.
+     */
+    public synchronized AlignmentScore get(Key key)
+    {
+        final AlignmentScore score = entries.get(key);
+        if (score != null)
+            hits++;
+        else
+            misses++;
+        return score;
+    }
+
+    /**
+     * Store the score of the alignment.
+     * <p>
+     * The key keeps a copy of its window, so the consensus sequence may grow afterwards.
+     *
+     * @param key The key of the alignment.
+     * @param score The score in the coordinates of the window.
+     */
+    public synchronized void put(Key key, AlignmentScore score)
+    {
+        final Key stored = key.detach();
+        if (entries.put(stored, score) == null)
+            usedBytes += stored.getSize();
+
+        final Iterator<Map.Entry<Key, AlignmentScore>> eldest = entries.entrySet().iterator();
+        while (usedBytes > memoryBudget && eldest.hasNext()) {
+            usedBytes -= eldest.next().getKey().getSize();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * @return Number of lookups which found a score.
+     */
+    public synchronized long getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * @return Number of lookups which didn't find a score.
+     */
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+
+    /**
+     * @return Number of cached scores.
+     */
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * @return The estimated number of bytes taken by the cached scores.
+     */
+    public synchronized long getUsedBytes()
+    {
+        return usedBytes;
+    }
+
+    /**
+     * @return The approximate number of bytes the cached scores may take.
+     */
+    public long getMemoryBudget()
+    {
+        return memoryBudget;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return "Alignment cache: " + hits + " hits, " + misses + " misses, " + entries.size() + " entries, "
+                + usedBytes + "/" + memoryBudget + " bytes";
+    }
+
+    /**
+     * The key of an alignment of a read to a window of the consensus sequence.
+     *
+     * @author Martin Pecka
+     */
+    public static final class Key
+    {
+        /** Multiplier of the rolling hash. */
+        private static final long        HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+        /** The read (compared by identity). */
+        private final GenomeRead         read;
+        /** The window, a view of the consensus sequence until the key is stored (see {@link #detach()}). */
+        private final NucleotideSequence window;
+        /** Polynomial hash of the bases of the window, which tells most of the different windows apart cheaply. */
+        private final long               fingerprint;
+        /** Length of the window. */
+        private final int                length;
+        /** True if the window starts at the start of the consensus. */
+        private final boolean            startFree;
+        /** True if the window ends at the end of the consensus. */
+        private final boolean            endFree;
+        /** The bonus for matching compounds. */
+        private final int                match;
+        /** Penalty for mismatch compounds. */
+        private final int                mismatch;
+        /** Penalty for gap. */
+        private final int                gap;
+
+        /**
+         * @param read The aligned read.
+         * @param consensus The consensus sequence.
+         * @param windowStart Position of the first character of the window.
+         * @param windowEnd Position after the last character of the window.
+         * @param match The bonus for matching compounds.
+         * @param mismatch Penalty for mismatch compounds.
+         * @param gap Penalty for gap.
+         */
+        public Key(GenomeRead read, NucleotideSequence consensus, int windowStart, int windowEnd, int match,
+                int mismatch, int gap)
+        {
+            this.read = read;
+            this.window = consensus.subSequence(windowStart, windowEnd);
+            this.length = windowEnd - windowStart;
+            this.startFree = windowStart == 0;
+            this.endFree = windowEnd == consensus.length();
+            this.match = match;
+            this.mismatch = mismatch;
+            this.gap = gap;
+
+            long hash = 0;
+            for (int i = windowStart; i < windowEnd; i++) {
+                hash = hash * HASH_MULTIPLIER + consensus.symbolAt(i) + 1;
+            }
+            this.fingerprint = hash;
+        }
+
+        /**
+         * @param other The key to copy.
+         * @param window The window of the new key, with the same content as the window of the copied key.
+         */
+        private Key(Key other, NucleotideSequence window)
+        {
+            this.read = other.read;
+            this.window = window;
+            this.fingerprint = other.fingerprint;
+            this.length = other.length;
+            this.startFree = other.startFree;
+            this.endFree = other.endFree;
+            this.match = other.match;
+            this.mismatch = other.mismatch;
+            this.gap = other.gap;
+        }
+
+        /**
+         * @return An equal key with its own copy of the window, which doesn't keep the bases of the whole consensus
+         *         sequence in memory.
+         */
+        private Key detach()
+        {
+            return new Key(this, new NucleotideSequence(window));
+        }
+
+        /**
+         * @return The estimated number of bytes taken by the entry of this key.
+         */
+        private long getSize()
+        {
+            return ENTRY_SIZE + 8L * ((length + 31) / 32);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int result = System.identityHashCode(read);
+            result = 31 * result + (int) (fingerprint ^ (fingerprint >>> 32));
+            result = 31 * result + length;
+            result = 31 * result + (startFree ? 1 : 0) + (endFree ? 2 : 0);
+            result = 31 * result + match;
+            result = 31 * result + mismatch;
+            result = 31 * result + gap;
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Key))
+                return false;
+            final Key other = (Key) obj;
+            if (read != other.read || fingerprint != other.fingerprint || length != other.length
+                    || startFree != other.startFree || endFree != other.endFree || match != other.match
+                    || mismatch != other.mismatch || gap != other.gap)
+                return false;
+
+            // different windows may have the same fingerprint
+            return window.regionMatches(0, other.window, 0, length);
+        }
+    }
+}
@@ -0,0 +1,264 @@
+/**  */
+package cz.cuni.mff.peckam.bioinf.superstring;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of a genome assembly: the wall and CPU time of the phases of the assembly, and counters of the hot paths
+ * (alignments, computed cells of the DP tables, reads found contained in the consensus, merges).
+ * <p>
+ * The counters may be updated concurrently. The phases are timed by the thread running them, and their CPU time is
+ * the CPU time of that thread (the alignments run on an executor are not included). A phase may run several times,
+ * its times are summed.
+ *
+ * @author Martin Pecka
+ */
+public class AssemblyMetrics
+{
+    /**
+     * The phases of the assembly.
+     *
+     * @author Martin Pecka
+     */
+    public enum Phase
+    {
+        /** Parsing of the input. */
+        PARSE,
+        /** Removal of the redundant reads, indexing the reads and initialization of the strategy. */
+        INIT,
+        /** Removal of the reads contained in the first read. */
+        PRE_CLEAN,
+        /** Merging of the reads to the consensus sequence one by one. */
+        GREEDY_LOOP,
+        /** Evaluation of the result. */
+        EVALUATION
+    }
+
+    /** The bean measuring the CPU time of the threads. */
+    private static final ThreadMXBean THREADS          = ManagementFactory.getThreadMXBean();
+
+    /** Total wall time of the phases in nanoseconds. */
+    private final long[]              wallTimes        = new long[Phase.values().length];
+
+    /** Total CPU time of the phases in nanoseconds. */
+    private final long[]              cpuTimes         = new long[Phase.values().length];
+
+    /** The wall time when the running phases started, -1 for the phases not running. */
+    private final long[]              wallStarts       = new long[Phase.values().length];
+
+    /** The CPU time of the thread when the running phases started. */
+    private final long[]              cpuStarts        = new long[Phase.values().length];
+
+    /** Number of computed alignments. */
+    private final LongAdder           alignments       = new LongAdder();
+
+    /** Number of computed cells of the DP tables. */
+    private final LongAdder           cells            = new LongAdder();
+
+    /** Number of reads found contained in the consensus sequence by an alignment. */
+    private final LongAdder           containmentHits  = new LongAdder();
+
+    /** Number of reads merged to the consensus sequence. */
+    private final LongAdder           merges           = new LongAdder();
+
+    /** Number of reads removed as exact duplicates of other reads. */
+    private final LongAdder           duplicateReads   = new LongAdder();
+
+    /** Number of reads removed as exact substrings of other reads. */
+    private final LongAdder           containedReads   = new LongAdder();
+
+    /**
+     * Create metrics with all the counters zero.
+     */
+    public AssemblyMetrics()
+    {
+        for (int p = 0; p < wallStarts.length; p++) {
+            wallStarts[p] = -1;
+        }
+    }
+
+    /**
+     * Start timing a phase.
+     *
+     * @param phase The phase.
+     */
+    public synchronized void startPhase(Phase phase)
+    {
+        wallStarts[phase.ordinal()] = System.nanoTime();
+        cpuStarts[phase.ordinal()] = getThreadCpuTime();
+    }
+
+    /**
+     * Stop timing a phase started by {@link #startPhase(Phase)} on the same thread.
+     *
+     * @param phase The phase.
+     */
+    public synchronized void endPhase(Phase phase)
+    {
+        final int p = phase.ordinal();
+        if (wallStarts[p] < 0)
+            throw new IllegalStateException("Phase " + phase + " hasn't been started.");
+
+        wallTimes[p] += System.nanoTime() - wallStarts[p];
+        cpuTimes[p] += getThreadCpuTime() - cpuStarts[p];
+        wallStarts[p] = -1;
+    }
+
+    /**
+     * Record a computed alignment.
+     *
+     * @param computedCells Number of computed cells of its DP table.
+     */
+    public void recordAlignment(long computedCells)
+    {
+        alignments.increment();
+        cells.add(computedCells);
+    }
+
+    /**
+     * Record a read found contained in the consensus sequence.
+     */
+    public void recordContainmentHit()
+    {
+        containmentHits.increment();
+    }
+
+    /**
+     * Record a read merged to the consensus sequence.
+     */
+    public void recordMerge()
+    {
+        merges.increment();
+    }
+
+    /**
+     * Record the reads removed by {@link RedundantReadFilter}.
+     *
+     * @param duplicates Number of exact duplicates.
+     * @param contained Number of reads exactly contained in other reads.
+     */
+    public void recordRedundantReads(int duplicates, int contained)
+    {
+        duplicateReads.add(duplicates);
+        containedReads.add(contained);
+    }
+
+    /**
+     * @param phase A phase.
+     * @return Total wall time of the phase in nanoseconds.
+     */
+    public synchronized long getWallTime(Phase phase)
+    {
+        return wallTimes[phase.ordinal()];
+    }
+
+    /**
+     * @param phase A phase.
+     * @return Total CPU time of the thread running the phase in nanoseconds, 0 if it can't be measured.
+     */
+    public synchronized long getCpuTime(Phase phase)
+    {
+        return cpuTimes[phase.ordinal()];
+    }
+
+    /**
+     * @return Number of computed alignments.
+     */
+    public long getAlignments()
+    {
+        return alignments.sum();
+    }
+
+    /**
+     * @return Number of computed cells of the DP tables.
+     */
+    public long getCells()
+    {
+        return cells.sum();
+    }
+
+    /**
+     * @return Number of computed cells per second of the phases aligning the candidate reads (the pre-clean and the
+     *         greedy loop), 0 if they haven't run.
+     */
+    public double getCellsPerSecond()
+    {
+        final long time = getWallTime(Phase.PRE_CLEAN) + getWallTime(Phase.GREEDY_LOOP);
+        return (time > 0) ? getCells() * 1e9 / time : 0;
+    }
+
+    /**
+     * @return Number of reads found contained in the consensus sequence by an alignment.
+     */
+    public long getContainmentHits()
+    {
+        return containmentHits.sum();
+    }
+
+    /**
+     * @return Number of reads merged to the consensus sequence.
+     */
+    public long getMerges()
+    {
+        return merges.sum();
+    }
+
+    /**
+     * @return Number of reads removed as exact duplicates of other reads.
+     */
+    public long getDuplicateReads()
+    {
+        return duplicateReads.sum();
+    }
+
+    /**
+     * @return Number of reads removed as exact substrings of other reads.
+     */
+    public long getContainedReads()
+    {
+        return containedReads.sum();
+    }
+
+    /**
+     * @return The metrics as a JSON object. The times are in nanoseconds.
+     */
+    public String toJson()
+    {
+        final StringBuilder result = new StringBuilder("{\n  \"phases\": {");
+        for (Phase phase : Phase.values()) {
+            result.append(phase.ordinal() == 0 ? "\n" : ",\n");
+            result.append("    \"").append(phase.name().toLowerCase(Locale.ROOT)).append("\": {\"wallNanos\": ")
+                    .append(getWallTime(phase)).append(", \"cpuNanos\": ").append(getCpuTime(phase)).append("}");
+        }
+        result.append("\n  },\n");
+        result.append("  \"alignments\": ").append(getAlignments()).append(",\n");
+        result.append("  \"cells\": ").append(getCells()).append(",\n");
+        result.append("  \"cellsPerSecond\": ").append(String.format(Locale.ROOT, "%.1f", getCellsPerSecond()))
+                .append(",\n");
+        result.append("  \"containmentHits\": ").append(getContainmentHits()).append(",\n");
+        result.append("  \"merges\": ").append(getMerges()).append(",\n");
+        result.append("  \"duplicateReads\": ").append(getDuplicateReads()).append(",\n");
+        result.append("  \"containedReads\": ").append(getContainedReads()).append("\n");
+        result.append("}");
+        return result.toString();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format(Locale.ROOT, "Assembly metrics: %d alignments, %d cells (%.3g cells/s), %d containment "
+                + "hits, %d merges, %d duplicates and %d contained reads removed", getAlignments(), getCells(),
+                getCellsPerSecond(), getContainmentHits(), getMerges(), getDuplicateReads(), getContainedReads());
+    }
+
+    /**
+     * @return CPU time of the current thread in nanoseconds, 0 if it can't be measured.
+     */
+    private static long getThreadCpuTime()
+    {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : 0;
+    }
+}
@@ -0,0 +1,28 @@
+/**  */
+package cz.cuni.mff.peckam.bioinf.superstring;
+
+/**
+ * Listener of the progress of a genome assembly (see
+ * {@link SuperstringFinder#setProgressListener(AssemblyProgressListener, long)}).
+ * 
+ * @author Martin Pecka
+ */
+public interface AssemblyProgressListener
+{
+    /**
+     * Called when a phase of the assembly has completed.
+     * 
+     * @param phase The completed phase.
+     * @param metrics The metrics of the assembly.
+     */
+    void phaseCompleted(AssemblyMetrics.Phase phase, AssemblyMetrics metrics);
+
+    /**
+     * Called while the reads are being merged, at most once per the interval set on the finder.
+     * 
+     * @param remainingReads Number of the reads remaining to merge.
+     * @param consensusLength Length of the consensus sequence.
+     * @param metrics The metrics of the assembly.
+     */
+    void progress(int remainingReads, int consensusLength, AssemblyMetrics metrics);
+}
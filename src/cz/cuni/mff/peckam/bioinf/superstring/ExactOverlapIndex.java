@@ -0,0 +1,305 @@
+/**  */
+package cz.cuni.mff.peckam.bioinf.superstring;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import cz.cuni.mff.peckam.bioinf.alignments.NucleotideSequence;
+
+/**
+ * Generalized suffix array and FM-index of reads, used to find the exact containments and the exact suffix-prefix
+ * overlaps of all the reads in near-linear time.
+ * <p>
+ * The indexed text is <code>$r0$r1$...$rn$</code> terminated by a unique smallest symbol, where <code>$</code> is a
+ * separator. The suffix array is built by {@link SuffixArrays}, and the backward search over the Burrows-Wheeler
+ * transform of the text finds all occurrences of a pattern. All characters other than a, c, g and t are indexed as a
+ * single symbol, so the occurrences of the reads containing such characters are checked against the real characters.
+ *
+ * @author Martin Pecka
+ */
+public class ExactOverlapIndex
+{
+    /** The terminating symbol of the text. */
+    private static final int       SENTINEL        = 0;
+    /** The symbol separating the reads. */
+    private static final int       SEPARATOR       = 1;
+    /** The symbol of the first base, the other ones follow. */
+    private static final int       FIRST_BASE      = 2;
+    /** The symbol of all the other characters. */
+    private static final int       OTHER           = FIRST_BASE + NucleotideSequence.ESCAPE_OFFSET;
+    /** Number of symbols of the text. */
+    private static final int       ALPHABET_SIZE   = OTHER + 1;
+
+    /** Every this many rows of the BWT the occurrence counts are stored. */
+    private static final int       CHECKPOINT_STEP = 64;
+
+    /** Number of reads searched for by one task of {@link #findContainedReads(ExecutorService)}. */
+    private static final int       BLOCK_SIZE      = 256;
+
+    /** The indexed reads. */
+    private final List<GenomeRead> reads;
+
+    /** The positions of the first characters of the reads in the text. */
+    private final int[]            readStarts;
+
+    /** The suffix array of the text. */
+    private final int[]            suffixArray;
+
+    /** The Burrows-Wheeler transform of the text. */
+    private final byte[]           bwt;
+
+    /** Number of symbols of the text smaller than the symbol. */
+    private final int[]            smaller         = new int[ALPHABET_SIZE];
+
+    /** Number of occurrences of the symbols in the BWT before every {@link #CHECKPOINT_STEP}-th row. */
+    private final int[][]          checkpoints;
+
+    /**
+     * Index the given reads.
+     *
+     * @param reads The reads to index.
+     */
+    public ExactOverlapIndex(List<GenomeRead> reads)
+    {
+        this.reads = new ArrayList<>(reads);
+
+        int length = 2;
+        for (GenomeRead read : this.reads) {
+            length += read.getRead().length() + 1;
+        }
+
+        final int[] text = new int[length];
+        readStarts = new int[this.reads.size()];
+        int position = 0;
+        text[position++] = SEPARATOR;
+        for (int r = 0; r < this.reads.size(); r++) {
+            final NucleotideSequence read = this.reads.get(r).getRead();
+            readStarts[r] = position;
+            for (int i = 0; i < read.length(); i++) {
+                text[position++] = getSymbol(read, i);
+            }
+            text[position++] = SEPARATOR;
+        }
+        text[position] = SENTINEL;
+
+        suffixArray = SuffixArrays.build(text, ALPHABET_SIZE);
+
+        bwt = new byte[length];
+        checkpoints = new int[length / CHECKPOINT_STEP + 1][];
+        final int[] counts = new int[ALPHABET_SIZE];
+        for (int row = 0; row < length; row++) {
+            if (row % CHECKPOINT_STEP == 0)
+                checkpoints[row / CHECKPOINT_STEP] = counts.clone();
+            final int symbol = text[suffixArray[row] > 0 ? suffixArray[row] - 1 : length - 1];
+            bwt[row] = (byte) symbol;
+            counts[symbol]++;
+        }
+        if (length % CHECKPOINT_STEP == 0)
+            checkpoints[length / CHECKPOINT_STEP] = counts.clone();
+        for (int c = 1; c < ALPHABET_SIZE; c++) {
+            smaller[c] = smaller[c - 1] + counts[c - 1];
+        }
+    }
+
+    /**
+     * Find the reads which occur exactly in some other read.
+     * <p>
+     * Of the identical reads, only the first one isn't contained.
+     *
+     * @return For every read (in the order in which they were indexed) true if it is contained in some other read.
+     */
+    public boolean[] findContainedReads()
+    {
+        return findContainedReads(null);
+    }
+
+    /**
+     * Find the reads which occur exactly in some other read, searching for blocks of the reads concurrently.
+     * <p>
+     * Of the identical reads, only the first one isn't contained.
+     *
+     * @param executor The executor to search for the reads on, or <code>null</code> to search for them one by one.
+     * @return For every read (in the order in which they were indexed) true if it is contained in some other read.
+     */
+    public boolean[] findContainedReads(ExecutorService executor)
+    {
+        final boolean[] result = new boolean[reads.size()];
+        if (executor == null) {
+            findContainedReads(0, reads.size(), result);
+            return result;
+        }
+
+        final List<Callable<Void>> tasks = new ArrayList<>();
+        for (int start = 0; start < reads.size(); start += BLOCK_SIZE) {
+            final int blockStart = start, blockEnd = Math.min(reads.size(), start + BLOCK_SIZE);
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call()
+                {
+                    findContainedReads(blockStart, blockEnd, result);
+                    return null;
+                }
+            });
+        }
+
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks))
+                future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while searching for the contained reads.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+
+        return result;
+    }
+
+    /**
+     * Find out which of the given reads occur exactly in some other read.
+     *
+     * @param start Index of the first read to search for.
+     * @param end Index after the last read to search for.
+     * @param result For every read true if it is contained in some other read. The items of the searched reads will
+     *            be set.
+     */
+    private void findContainedReads(int start, int end, boolean[] result)
+    {
+        final int[] range = new int[2];
+
+        for (int r = start; r < end; r++) {
+            final NucleotideSequence read = reads.get(r).getRead();
+            if (read.length() == 0)
+                continue;
+
+            range[0] = 0;
+            range[1] = bwt.length;
+            for (int i = read.length() - 1; i >= 0; i--) {
+                extend(range, getSymbol(read, i));
+            }
+
+            for (int row = range[0]; row < range[1] && !result[r]; row++) {
+                final int other = getReadAt(suffixArray[row]);
+                final NucleotideSequence otherRead = reads.get(other).getRead();
+                result[r] = other != r && (otherRead.length() > read.length() || other < r)
+                        && (!read.hasEscapes() || otherRead.regionMatches(suffixArray[row] - readStarts[other], read, 0,
+                                read.length()));
+            }
+        }
+    }
+
+    /**
+     * Find the longest exact suffix-prefix overlaps of all pairs of distinct reads.
+     * <p>
+     * An overlap is an edge <code>from -&gt; to</code> with both the score and the number of covered characters equal
+     * to the length of the overlap (which is shorter than both reads).
+     *
+     * @param minLength The minimum length of the overlaps.
+     * @param skipped Reads which neither take part in any overlap, or <code>null</code>.
+     * @return The overlaps.
+     */
+    OverlapGraph findOverlaps(int minLength, boolean[] skipped)
+    {
+        final OverlapGraph result = new OverlapGraph();
+        final int[] range = new int[2];
+
+        // the longest overlap of the current read with every other read, and the reads with some overlap
+        final int[] longest = new int[reads.size()];
+        final int[] found = new int[reads.size()];
+
+        for (int from = 0; from < reads.size(); from++) {
+            if (skipped != null && skipped[from])
+                continue;
+
+            final NucleotideSequence read = reads.get(from).getRead();
+            int foundCount = 0;
+
+            range[0] = 0;
+            range[1] = bwt.length;
+            for (int length = 1; length < read.length(); length++) {
+                extend(range, getSymbol(read, read.length() - length));
+                if (length < minLength)
+                    continue;
+
+                // the suffixes of the text starting with the separator followed by the suffix of the read
+                final int first = smaller[SEPARATOR] + occurrences(SEPARATOR, range[0]);
+                final int last = smaller[SEPARATOR] + occurrences(SEPARATOR, range[1]);
+                for (int row = first; row < last; row++) {
+                    final int to = getReadAt(suffixArray[row] + 1);
+                    final NucleotideSequence toRead = reads.get(to).getRead();
+                    if (to == from || (skipped != null && skipped[to]) || length >= toRead.length())
+                        continue;
+                    if (read.hasEscapes() && !toRead.regionMatches(0, read, read.length() - length, length))
+                        continue;
+                    if (longest[to] == 0)
+                        found[foundCount++] = to;
+                    longest[to] = length;
+                }
+            }
+
+            for (int i = 0; i < foundCount; i++) {
+                final int to = found[i];
+                result.addEdge(from, to, longest[to], longest[to]);
+                longest[to] = 0;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Prepend a symbol to the pattern whose occurrences are given by a range of the suffix array (a step of the
+     * backward search).
+     *
+     * @param range The range of rows of the suffix array, start inclusive and end exclusive. Will be updated.
+     * @param symbol The symbol to prepend.
+     */
+    private void extend(int[] range, int symbol)
+    {
+        range[0] = smaller[symbol] + occurrences(symbol, range[0]);
+        range[1] = smaller[symbol] + occurrences(symbol, range[1]);
+    }
+
+    /**
+     * @param symbol A symbol.
+     * @param row A row of the BWT.
+     * @return Number of occurrences of the symbol in the BWT before the given row.
+     */
+    private int occurrences(int symbol, int row)
+    {
+        int result = checkpoints[row / CHECKPOINT_STEP][symbol];
+        for (int i = row - row % CHECKPOINT_STEP; i < row; i++) {
+            if (bwt[i] == symbol)
+                result++;
+        }
+        return result;
+    }
+
+    /**
+     * @param position A position in the text inside a read.
+     * @return Index of the read.
+     */
+    private int getReadAt(int position)
+    {
+        final int index = Arrays.binarySearch(readStarts, position);
+        return (index >= 0) ? index : -index - 2;
+    }
+
+    /**
+     * @param sequence A sequence.
+     * @param index Index of a character.
+     * @return The symbol of the character in the text.
+     */
+    private static int getSymbol(NucleotideSequence sequence, int index)
+    {
+        final int symbol = sequence.symbolAt(index);
+        return symbol < NucleotideSequence.ESCAPE_OFFSET ? FIRST_BASE + symbol : OTHER;
+    }
+}
@@ -1,14 +1,13 @@
 /**  */
 package cz.cuni.mff.peckam.bioinf.superstring;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+import cz.cuni.mff.peckam.bioinf.alignments.NucleotideSequence;
+
 /**
  * The input data for genome assembly.
  * 
@@ -17,15 +16,15 @@ import java.util.List;
 public class GenomeAssemblyInput
 {
     /** The original sequence (may be <code>null</code>). */
-    private final List<Character>       originalSequence;
+    private final NucleotideSequence       originalSequence;
     /** Reads corresponding to the sequence. */
-    private final List<List<Character>> reads;
+    private final List<NucleotideSequence> reads;
 
     /**
      * @param originalSequence The original sequence (may be <code>null</code>).
      * @param reads Reads corresponding to the sequence.
      */
-    public GenomeAssemblyInput(List<Character> originalSequence, List<List<Character>> reads)
+    public GenomeAssemblyInput(NucleotideSequence originalSequence, List<NucleotideSequence> reads)
     {
         this.originalSequence = originalSequence;
         this.reads = reads;
@@ -34,7 +33,7 @@ public class GenomeAssemblyInput
     /**
      * @return The original sequence (may be <code>null</code>).
      */
-    public List<Character> getOriginalSequence()
+    public NucleotideSequence getOriginalSequence()
     {
         return originalSequence;
     }
@@ -42,37 +41,24 @@ public class GenomeAssemblyInput
     /**
      * @return Reads corresponding to the sequence.
      */
-    public List<List<Character>> getReads()
+    public List<NucleotideSequence> getReads()
     {
         return reads;
     }
 
     /**
      * Read the genome assembly input from the given file.
+     * <p>
+     * The file has the original sequence on its first line, and one read on each of the following lines.
      * 
      * @param file The file to read the input from.
      * 
-     * @return The parsed input.
+     * @return The parsed input, or <code>null</code> if the file can't be read.
      */
     public static GenomeAssemblyInput readFromFileWithOriginalSequence(File file)
     {
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            final List<Character> originalSequence = stringToCharList(reader.readLine());
-            final List<List<Character>> reads = new ArrayList<>();
-
-            while (true) {
-                final String line = reader.readLine();
-                if (line != null) {
-                    reads.add(stringToCharList(line));
-                } else {
-                    break;
-                }
-            }
-
-            return new GenomeAssemblyInput(originalSequence, reads);
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
-            return null;
+        try (MappedByteInput input = new MappedByteInput(file)) {
+            return readWithOriginalSequence(input);
         } catch (IOException e) {
             e.printStackTrace();
             return null;
@@ -80,19 +66,163 @@ public class GenomeAssemblyInput
     }
 
     /**
-     * Convert a string to a list of its characters.
+     * Read the genome assembly input from the given file in the FASTA format, the FASTQ format (the qualities are
+     * ignored), or the format of {@link #readFromFileWithOriginalSequence(File)}. The format is recognized by the first
+     * character of the file (<code>&gt;</code> for FASTA and <code>@</code> for FASTQ).
+     * <p>
+     * The file is mapped to memory (see {@link MappedByteInput}) and the bases are packed directly to the sequences.
+     * 
+     * @param file The file to read the input from.
+     * 
+     * @return The parsed input. The original sequence is <code>null</code> for the FASTA and FASTQ files.
+     * 
+     * @throws IOException If the file can't be read or is malformed.
+     */
+    public static GenomeAssemblyInput readFromFile(File file) throws IOException
+    {
+        try (MappedByteInput input = new MappedByteInput(file)) {
+            return read(input);
+        }
+    }
+
+    /**
+     * Read the genome assembly input, recognizing its format by its first character.
      * 
-     * @param s String to convert.
-     * @return List of the string's characters.
+     * @param input The input to read.
+     * @return The parsed input.
+     * @throws IOException If the input can't be read or is malformed.
      */
-    private static List<Character> stringToCharList(String s)
+    static GenomeAssemblyInput read(MappedByteInput input) throws IOException
     {
-        final List<Character> result = new ArrayList<>();
-        for (int i = 0; i < s.length(); i++) {
-            result.add(s.charAt(i));
+        switch (input.peek()) {
+            case '>':
+                return new GenomeAssemblyInput(null, readFasta(input));
+            case '@':
+                return new GenomeAssemblyInput(null, readFastq(input));
+            default:
+                return readWithOriginalSequence(input);
+        }
+    }
+
+    /**
+     * Read the original sequence from the first line and the reads from the following lines.
+     * 
+     * @param input The input to read.
+     * @return The parsed input.
+     * @throws IOException If the input can't be read.
+     */
+    private static GenomeAssemblyInput readWithOriginalSequence(MappedByteInput input) throws IOException
+    {
+        final NucleotideSequence originalSequence = new NucleotideSequence();
+        readLine(input, originalSequence);
+
+        final List<NucleotideSequence> reads = new ArrayList<>();
+        int capacity = 0;
+        while (true) {
+            // the reads usually have similar lengths, so this mostly avoids growing the sequence
+            final NucleotideSequence read = new NucleotideSequence(capacity);
+            if (!readLine(input, read))
+                break;
+            reads.add(read);
+            capacity = read.length();
+        }
+
+        return new GenomeAssemblyInput(originalSequence, reads);
+    }
+
+    /**
+     * Read the sequences of a FASTA file (a header line starting with <code>&gt;</code> followed by any number of
+     * sequence lines).
+     * 
+     * @param input The input to read.
+     * @return The sequences.
+     * @throws IOException If the input can't be read.
+     */
+    private static List<NucleotideSequence> readFasta(MappedByteInput input) throws IOException
+    {
+        final List<NucleotideSequence> reads = new ArrayList<>();
+        int capacity = 0;
+        while (input.peek() >= 0) {
+            // the header
+            readLine(input, null);
+
+            final NucleotideSequence read = new NucleotideSequence(capacity);
+            while (input.peek() >= 0 && input.peek() != '>') {
+                readLine(input, read);
+            }
+            reads.add(read);
+            capacity = read.length();
+        }
+        return reads;
+    }
+
+    /**
+     * Read the sequences of a FASTQ file (a header line starting with <code>@</code>, sequence lines, a separator line
+     * starting with <code>+</code> and quality lines with as many characters as the sequence).
+     * 
+     * @param input The input to read.
+     * @return The sequences.
+     * @throws IOException If the input can't be read or is malformed.
+     */
+    private static List<NucleotideSequence> readFastq(MappedByteInput input) throws IOException
+    {
+        final List<NucleotideSequence> reads = new ArrayList<>();
+        int capacity = 0;
+        while (input.peek() >= 0) {
+            if (input.peek() == '\n' || input.peek() == '\r') {
+                readLine(input, null);
+                continue;
+            }
+            if (input.peek() != '@')
+                throw new IOException("FASTQ record expected at byte " + input.position() + ".");
+            readLine(input, null);
+
+            final NucleotideSequence read = new NucleotideSequence(capacity);
+            while (input.peek() >= 0 && input.peek() != '+') {
+                readLine(input, read);
+            }
+            if (!readLine(input, null))
+                throw new IOException("FASTQ quality separator expected at byte " + input.position() + ".");
+
+            // the qualities may contain both @ and +, so they are recognized by their count
+            for (int remaining = read.length(); remaining > 0;) {
+                final int c = input.read();
+                if (c < 0)
+                    throw new IOException("Unexpected end of the FASTQ qualities at byte " + input.position() + ".");
+                if (c != '\n' && c != '\r')
+                    remaining--;
+            }
+            readLine(input, null);
+
+            reads.add(read);
+            capacity = read.length();
+        }
+        return reads;
+    }
+
+    /**
+     * Read the rest of the current line.
+     * 
+     * @param input The input to read.
+     * @param sequence The sequence to append the characters of the line to, or <code>null</code> to skip them.
+     * @return False if the input ended before the line.
+     * @throws IOException If the input can't be read.
+     */
+    private static boolean readLine(MappedByteInput input, NucleotideSequence sequence) throws IOException
+    {
+        int c = input.read();
+        if (c < 0)
+            return false;
+
+        while (c >= 0 && c != '\n' && c != '\r') {
+            if (sequence != null)
+                sequence.append((char) c);
+            c = input.read();
         }
+        if (c == '\r' && input.peek() == '\n')
+            input.read();
 
-        return result;
+        return true;
     }
 
 }
@@ -3,6 +3,8 @@ package cz.cuni.mff.peckam.bioinf.superstring;
 
 import java.util.List;
 
+import cz.cuni.mff.peckam.bioinf.alignments.NucleotideSequence;
+
 /**
  * Strategy for assembling a genome (heuristics).
  * 
@@ -10,6 +12,18 @@ import java.util.List;
  */
 public interface GenomeAssemblyStrategy
 {
+    /**
+     * Set the metrics to record the work of the strategy itself to (the alignments it computes, the reads it finds to be
+     * contained).
+     * <p>
+     * The default implementation ignores the metrics, which suits the strategies which don't align the reads.
+     * 
+     * @param metrics The metrics, <code>null</code> not to record them.
+     */
+    default void setMetrics(AssemblyMetrics metrics)
+    {
+    }
+
     /**
      * Initialize the strategy.
      * 
@@ -38,6 +52,23 @@ public interface GenomeAssemblyStrategy
      */
     boolean hasMoreReads();
 
+    /**
+     * Add a read to the remaining reads after the strategy has been initialized.
+     * 
+     * @param read The new read.
+     * @throws UnsupportedOperationException If the strategy can't accept reads after the initialization.
+     */
+    void addRead(GenomeRead read);
+
+    /**
+     * Return the read to merge to the consensus sequence next, if the strategy chooses it by itself.
+     * 
+     * @param consensus The current consensus sequence.
+     * @return The read to merge next, or <code>null</code> to let the caller align all the remaining reads to the
+     *         consensus sequence and choose the best one.
+     */
+    GenomeRead getBestCandidate(NucleotideSequence consensus);
+
     /**
      * Called whenever a read becomes merged to the consensus sequence.
      * 
@@ -1,7 +1,7 @@
 /**  */
 package cz.cuni.mff.peckam.bioinf.superstring;
 
-import java.util.List;
+import cz.cuni.mff.peckam.bioinf.alignments.NucleotideSequence;
 
 /**
  * A container for a sequence of genetic bases.
@@ -11,12 +11,12 @@ import java.util.List;
 public class GenomeRead
 {
     /** The contained read. */
-    private final List<Character> read;
+    private final NucleotideSequence read;
 
     /**
      * @param read The read.
      */
-    public GenomeRead(List<Character> read)
+    public GenomeRead(NucleotideSequence read)
     {
         this.read = read;
     }
@@ -24,7 +24,7 @@ public class GenomeRead
     /**
      * @return The read.
      */
-    public List<Character> getRead()
+    public NucleotideSequence getRead()
     {
         return read;
     }
@@ -0,0 +1,157 @@
+/**  */
+package cz.cuni.mff.peckam.bioinf.superstring;
+
+import java.util.Arrays;
+
+/**
+ * A multimap from long keys to lists of ints stored in primitive arrays.
+ * <p>
+ * The keys are stored in an open addressing hash table with linear probing, and the values of every key form a linked
+ * list (the last added value first) in shared arrays, so no objects are allocated per key or value.
+ *
+ * @author Martin Pecka
+ */
+final class LongIntListMap
+{
+    /** Marks an empty slot of the hash table or the end of a list. */
+    private static final int NONE = -1;
+
+    /** The keys of the hash table slots. */
+    private long[]           keys;
+    /** The first entries of the lists of the slots, or {@link #NONE} for empty slots. */
+    private int[]            heads;
+    /** Number of used slots. */
+    private int              keyCount   = 0;
+
+    /** The values of the entries. */
+    private int[]            values;
+    /** The next entries of the lists. */
+    private int[]            next;
+    /** Number of entries. */
+    private int              entryCount = 0;
+
+    /**
+     * Create an empty map.
+     */
+    LongIntListMap()
+    {
+        keys = new long[16];
+        heads = new int[16];
+        Arrays.fill(heads, NONE);
+        values = new int[16];
+        next = new int[16];
+    }
+
+    /**
+     * Add the value to the front of the list of the key.
+     *
+     * @param key The key.
+     * @param value The value.
+     */
+    void add(long key, int value)
+    {
+        if (2 * (keyCount + 1) > keys.length)
+            rehash(2 * keys.length);
+
+        if (entryCount == values.length) {
+            values = Arrays.copyOf(values, 2 * entryCount);
+            next = Arrays.copyOf(next, 2 * entryCount);
+        }
+
+        final int slot = findSlot(keys, heads, key);
+        if (heads[slot] == NONE) {
+            keys[slot] = key;
+            keyCount++;
+        }
+
+        values[entryCount] = value;
+        next[entryCount] = heads[slot];
+        heads[slot] = entryCount;
+        entryCount++;
+    }
+
+    /**
+     * @param key The key.
+     * @return The first entry of the list of the key (the last value added), or <code>-1</code> if there is none.
+     */
+    int getFirst(long key)
+    {
+        return heads[findSlot(keys, heads, key)];
+    }
+
+    /**
+     * @param entry An entry.
+     * @return The next entry in the same list, or <code>-1</code> if it is the last one.
+     */
+    int getNext(int entry)
+    {
+        return next[entry];
+    }
+
+    /**
+     * @param entry An entry.
+     * @return The value of the entry.
+     */
+    int getValue(int entry)
+    {
+        return values[entry];
+    }
+
+    /**
+     * Find the slot holding the key, or the empty slot where it should be inserted.
+     *
+     * @param keys The keys of the slots.
+     * @param heads The heads of the slots.
+     * @param key The key.
+     * @return The slot.
+     */
+    private static int findSlot(long[] keys, int[] heads, long key)
+    {
+        final int mask = keys.length - 1;
+        int slot = (int) mix(key) & mask;
+        while (heads[slot] != NONE && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Move the keys to a hash table of the given capacity.
+     *
+     * @param capacity The new capacity (a power of two).
+     */
+    private void rehash(int capacity)
+    {
+        final long[] newKeys = new long[capacity];
+        final int[] newHeads = new int[capacity];
+        Arrays.fill(newHeads, NONE);
+
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (heads[slot] != NONE) {
+                final int newSlot = findSlot(newKeys, newHeads, keys[slot]);
+                newKeys[newSlot] = keys[slot];
+                newHeads[newSlot] = heads[slot];
+            }
+        }
+
+        keys = newKeys;
+        heads = newHeads;
+    }
+
+    /**
+     * Spread the bits of the key (the finalizer of MurmurHash3).
+     *
+     * @param key The key.
+     * @return The hash.
+     */
+    static long mix(long key)
+    {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,126 @@
+/**  */
+package cz.cuni.mff.peckam.bioinf.superstring;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Sequential reading of the bytes of a file mapped to memory.
+ * <p>
+ * The file is mapped by chunks (a single mapped buffer can't be larger than 2 GB), each chunk is mapped when the
+ * reading reaches it. No bytes are copied to the heap.
+ *
+ * @author Martin Pecka
+ */
+final class MappedByteInput implements Closeable
+{
+    /** The default size of the mapped chunks. */
+    static final long         DEFAULT_CHUNK_SIZE = 1L << 30;
+
+    /** The channel of the file. */
+    private final FileChannel channel;
+
+    /** Size of the file. */
+    private final long        size;
+
+    /** Size of the mapped chunks. */
+    private final long        chunkSize;
+
+    /** The current chunk, <code>null</code> before the first one is mapped. */
+    private MappedByteBuffer  chunk              = null;
+
+    /** Position of the current chunk in the file. */
+    private long              chunkStart         = 0;
+
+    /**
+     * Open the file.
+     *
+     * @param file The file.
+     * @throws IOException If the file can't be opened.
+     */
+    MappedByteInput(File file) throws IOException
+    {
+        this(file, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Open the file.
+     *
+     * @param file The file.
+     * @param chunkSize Size of the mapped chunks (at most {@link Integer#MAX_VALUE}).
+     * @throws IOException If the file can't be opened.
+     */
+    MappedByteInput(File file, long chunkSize) throws IOException
+    {
+        if (chunkSize < 1 || chunkSize > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Invalid chunk size " + chunkSize + ".");
+
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.size = channel.size();
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Read the next byte.
+     *
+     * @return The byte (0 to 255), or <code>-1</code> at the end of the file.
+     * @throws IOException If the next chunk can't be mapped.
+     */
+    int read() throws IOException
+    {
+        if (!ensureAvailable())
+            return -1;
+        return chunk.get() & 0xff;
+    }
+
+    /**
+     * Return the next byte without reading it.
+     *
+     * @return The byte (0 to 255), or <code>-1</code> at the end of the file.
+     * @throws IOException If the next chunk can't be mapped.
+     */
+    int peek() throws IOException
+    {
+        if (!ensureAvailable())
+            return -1;
+        return chunk.get(chunk.position()) & 0xff;
+    }
+
+    /**
+     * @return Position of the next byte in the file.
+     */
+    long position()
+    {
+        return (chunk == null) ? 0 : chunkStart + chunk.position();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+
+    /**
+     * Map the next chunk if the current one has been read.
+     *
+     * @return False at the end of the file.
+     * @throws IOException If the chunk can't be mapped.
+     */
+    private boolean ensureAvailable() throws IOException
+    {
+        if (chunk != null && chunk.hasRemaining())
+            return true;
+
+        final long next = (chunk == null) ? 0 : chunkStart + chunk.limit();
+        if (next >= size)
+            return false;
+
+        chunk = channel.map(FileChannel.MapMode.READ_ONLY, next, Math.min(chunkSize, size - next));
+        chunkStart = next;
+        return true;
+    }
+}
@@ -0,0 +1,55 @@
+/**  */
+package cz.cuni.mff.peckam.bioinf.superstring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of an iteration of {@link SuperstringFinder}, which drops a read contained in the consensus
+ * sequence or merges a read to it.
+ *
+ * @author Martin Pecka
+ */
+@Name("cz.cuni.mff.peckam.bioinf.Merge")
+@Label("Merge Iteration")
+@Category({ "Superstring Finder", "Assembly" })
+@Description("Choice of the next read to merge to the consensus sequence")
+@StackTrace(false)
+final class MergeEvent extends Event
+{
+    /** Outcome of the iteration which dropped a read contained in the consensus. */
+    static final String OUTCOME_CONTAINED = "contained";
+    /** Outcome of the iteration which merged a read to the consensus. */
+    static final String OUTCOME_MERGED    = "merged";
+    /** Outcome of the iteration whose best read didn't overlap the consensus enough to be merged. */
+    static final String OUTCOME_REJECTED  = "rejected";
+
+    /** Number of the iteration in the assembly. */
+    @Label("Iteration")
+    long                iteration;
+
+    /** Number of the candidate reads aligned to the consensus. */
+    @Label("Candidates Scanned")
+    @Description("Number of the candidate reads aligned to the consensus, 0 if the read was chosen by the strategy")
+    int                 candidates;
+
+    /** Score of the alignment of the chosen read. */
+    @Label("Chosen Score")
+    int                 score;
+
+    /** Length of the chosen read. */
+    @Label("Read Length")
+    int                 readLength;
+
+    /** Length of the consensus sequence after the iteration. */
+    @Label("Consensus Length")
+    int                 consensusLength;
+
+    /** What happened to the chosen read. */
+    @Label("Outcome")
+    String              outcome;
+}
@@ -0,0 +1,202 @@
+/**  */
+package cz.cuni.mff.peckam.bioinf.superstring;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import cz.cuni.mff.peckam.bioinf.alignments.NucleotideSequence;
+
+/**
+ * Index of the <code>(w, k)</code>-minimizers of reads, used to find the reads which share some sequence with a query
+ * without aligning them.
+ * <p>
+ * A minimizer is the k-mer with the smallest hash among <code>w</code> consecutive k-mers of a sequence. Two sequences
+ * sharing a substring of length at least <code>w + k - 1</code> share a minimizer. The k-mers containing characters
+ * other than a, c, g and t are skipped.
+ *
+ * @author Martin Pecka
+ */
+public class MinimizerIndex
+{
+    /** The maximum supported k-mer length (so that a k-mer fits in a long). */
+    public static final int        MAX_K = 31;
+
+    /** The indexed reads. */
+    private final List<GenomeRead> reads;
+
+    /** Number of consecutive k-mers from which one minimizer is chosen. */
+    private final int              w;
+
+    /** Length of the k-mers. */
+    private final int              k;
+
+    /** The indices of the reads containing the minimizers (each read at most once per minimizer). */
+    private final LongIntListMap   table = new LongIntListMap();
+
+    /**
+     * Index the given reads.
+     *
+     * @param reads The reads to index.
+     * @param w Number of consecutive k-mers from which one minimizer is chosen.
+     * @param k Length of the k-mers (1 to {@link #MAX_K}).
+     */
+    public MinimizerIndex(List<GenomeRead> reads, int w, int k)
+    {
+        if (k < 1 || k > MAX_K)
+            throw new IllegalArgumentException("K-mer length has to be between 1 and " + MAX_K + ".");
+        if (w < 1)
+            throw new IllegalArgumentException("Window length has to be positive.");
+
+        this.reads = new ArrayList<>(reads);
+        this.w = w;
+        this.k = k;
+
+        for (int r = 0; r < this.reads.size(); r++) {
+            for (long minimizer : getMinimizers(this.reads.get(r).getRead())) {
+                table.add(minimizer, r);
+            }
+        }
+    }
+
+    /**
+     * Add a read to the index.
+     *
+     * @param read The read to index.
+     */
+    public void add(GenomeRead read)
+    {
+        for (long minimizer : getMinimizers(read.getRead())) {
+            table.add(minimizer, reads.size());
+        }
+        reads.add(read);
+    }
+
+    /**
+     * Find the reads sharing at least the given number of minimizers with the query.
+     *
+     * @param query The query sequence.
+     * @param minShared The minimum number of distinct shared minimizers.
+     * @return The reads, in the order in which they were indexed.
+     */
+    public List<GenomeRead> findCandidates(NucleotideSequence query, int minShared)
+    {
+        final int[] indices = findCandidateIndices(query, minShared);
+        final List<GenomeRead> result = new ArrayList<>(indices.length);
+        for (int r : indices) {
+            result.add(reads.get(r));
+        }
+        return result;
+    }
+
+    /**
+     * Find the reads sharing at least the given number of minimizers with the query.
+     *
+     * @param query The query sequence.
+     * @param minShared The minimum number of distinct shared minimizers.
+     * @return Sorted indices of the reads in the order in which they were indexed.
+     */
+    int[] findCandidateIndices(NucleotideSequence query, int minShared)
+    {
+        final int[] counts = new int[reads.size()];
+        int[] found = new int[16];
+        int foundCount = 0;
+
+        for (long minimizer : getMinimizers(query)) {
+            for (int entry = table.getFirst(minimizer); entry >= 0; entry = table.getNext(entry)) {
+                final int r = table.getValue(entry);
+                if (++counts[r] == Math.max(minShared, 1)) {
+                    if (foundCount == found.length)
+                        found = Arrays.copyOf(found, 2 * foundCount);
+                    found[foundCount++] = r;
+                }
+            }
+        }
+
+        final int[] result = Arrays.copyOf(found, foundCount);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Compute the distinct minimizers of the sequence.
+     * <p>
+     * A sequence with less than <code>w</code> k-mers (but at least one) has the smallest of its k-mers as its only
+     * minimizer.
+     *
+     * @param sequence The sequence.
+     * @return The sorted hashes of the minimizers.
+     */
+    private long[] getMinimizers(NucleotideSequence sequence)
+    {
+        final int length = sequence.length();
+        final long mask = (1L << (2 * k)) - 1;
+
+        long[] result = new long[16];
+        int resultCount = 0;
+
+        // the hashes and positions of the k-mers which may still become minimizers, ascending by the hash
+        final long[] queueHashes = new long[w];
+        final int[] queuePositions = new int[w];
+        int queueStart = 0, queueSize = 0;
+
+        long kmer = 0;
+        int valid = 0;
+        for (int i = 0; i < length; i++) {
+            final int symbol = sequence.symbolAt(i);
+            if (symbol >= NucleotideSequence.ESCAPE_OFFSET) {
+                // the windows don't span the escaped characters
+                if (valid >= k && valid - k + 1 < w && queueSize > 0)
+                    result = add(result, resultCount++, queueHashes[queueStart]);
+                valid = 0;
+                queueSize = 0;
+                continue;
+            }
+
+            kmer = ((kmer << 2) | symbol) & mask;
+            if (++valid < k)
+                continue;
+
+            // drop the k-mer which falls out of the window and the ones which can't be minimizers anymore
+            if (queueSize > 0 && queuePositions[queueStart] <= i - w) {
+                queueStart = (queueStart + 1) % w;
+                queueSize--;
+            }
+            final long hash = LongIntListMap.mix(kmer);
+            while (queueSize > 0 && queueHashes[(queueStart + queueSize - 1) % w] >= hash)
+                queueSize--;
+            queueHashes[(queueStart + queueSize) % w] = hash;
+            queuePositions[(queueStart + queueSize) % w] = i;
+            queueSize++;
+
+            if (valid - k + 1 >= w)
+                result = add(result, resultCount++, queueHashes[queueStart]);
+        }
+        if (valid >= k && valid - k + 1 < w && queueSize > 0)
+            result = add(result, resultCount++, queueHashes[queueStart]);
+
+        // deduplicate
+        Arrays.sort(result, 0, resultCount);
+        int distinct = 0;
+        for (int i = 0; i < resultCount; i++) {
+            if (distinct == 0 || result[distinct - 1] != result[i])
+                result[distinct++] = result[i];
+        }
+        return Arrays.copyOf(result, distinct);
+    }
+
+    /**
+     * Store the value to the array, growing it if needed.
+     *
+     * @param array The array.
+     * @param index The index to store to.
+     * @param value The value.
+     * @return The array (possibly a new one).
+     */
+    private static long[] add(long[] array, int index, long value)
+    {
+        final long[] result = (index == array.length) ? Arrays.copyOf(array, 2 * index) : array;
+        result[index] = value;
+        return result;
+    }
+}
@@ -0,0 +1,138 @@
+/**  */
+package cz.cuni.mff.peckam.bioinf.superstring;
+
+import java.util.Arrays;
+
+/**
+ * A directed graph of suffix-prefix overlaps of reads stored in primitive arrays.
+ * <p>
+ * The reads are identified by their indices. An edge <code>from -&gt; to</code> means that a suffix of the read
+ * <code>from</code> overlaps a prefix of the read <code>to</code>, and the edge holds the score of the overlap and the
+ * number of characters of <code>to</code> covered by <code>from</code>.
+ *
+ * @author Martin Pecka
+ */
+final class OverlapGraph
+{
+    /** The source reads of the edges. */
+    private int[] from;
+    /** The target reads of the edges. */
+    private int[] to;
+    /** The scores of the overlaps. */
+    private int[] score;
+    /** The numbers of characters of the target reads covered by the overlaps. */
+    private int[] covered;
+    /** The number of edges. */
+    private int   size = 0;
+
+    /**
+     * Create an empty graph.
+     */
+    OverlapGraph()
+    {
+        from = new int[16];
+        to = new int[16];
+        score = new int[16];
+        covered = new int[16];
+    }
+
+    /**
+     * Add an edge.
+     *
+     * @param from The read whose suffix overlaps.
+     * @param to The read whose prefix overlaps.
+     * @param score Score of the overlap.
+     * @param covered Number of characters of <code>to</code> covered by the overlap.
+     */
+    void addEdge(int from, int to, int score, int covered)
+    {
+        if (size == this.from.length) {
+            final int capacity = 2 * size;
+            this.from = Arrays.copyOf(this.from, capacity);
+            this.to = Arrays.copyOf(this.to, capacity);
+            this.score = Arrays.copyOf(this.score, capacity);
+            this.covered = Arrays.copyOf(this.covered, capacity);
+        }
+        this.from[size] = from;
+        this.to[size] = to;
+        this.score[size] = score;
+        this.covered[size] = covered;
+        size++;
+    }
+
+    /**
+     * Add all edges of the other graph after the edges of this one.
+     *
+     * @param other The other graph.
+     */
+    void addAll(OverlapGraph other)
+    {
+        for (int e = 0; e < other.size; e++) {
+            addEdge(other.from[e], other.to[e], other.score[e], other.covered[e]);
+        }
+    }
+
+    /**
+     * @return The number of edges.
+     */
+    int size()
+    {
+        return size;
+    }
+
+    /**
+     * @param edge Index of the edge.
+     * @return The read whose suffix overlaps.
+     */
+    int getFrom(int edge)
+    {
+        return from[edge];
+    }
+
+    /**
+     * @param edge Index of the edge.
+     * @return The read whose prefix overlaps.
+     */
+    int getTo(int edge)
+    {
+        return to[edge];
+    }
+
+    /**
+     * @param edge Index of the edge.
+     * @return Score of the overlap.
+     */
+    int getScore(int edge)
+    {
+        return score[edge];
+    }
+
+    /**
+     * @param edge Index of the edge.
+     * @return Number of characters of the target read covered by the overlap.
+     */
+    int getCovered(int edge)
+    {
+        return covered[edge];
+    }
+
+    /**
+     * @return Indices of the edges sorted by their scores in descending order (the edges with equal scores are sorted
+     *         by their indices).
+     */
+    int[] getEdgesByScore()
+    {
+        // the non-negative scores are inverted so that the ascending order of the keys is the descending one of scores
+        final long[] keys = new long[size];
+        for (int e = 0; e < size; e++) {
+            keys[e] = ((long) (Integer.MAX_VALUE - score[e]) << 32) | e;
+        }
+        Arrays.sort(keys);
+
+        final int[] result = new int[size];
+        for (int e = 0; e < size; e++) {
+            result[e] = (int) keys[e];
+        }
+        return result;
+    }
+}
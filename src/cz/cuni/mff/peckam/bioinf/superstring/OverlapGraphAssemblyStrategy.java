@@ -0,0 +1,435 @@
+/**  */
+package cz.cuni.mff.peckam.bioinf.superstring;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import cz.cuni.mff.peckam.bioinf.alignments.AlignmentResult;
+import cz.cuni.mff.peckam.bioinf.alignments.AlignmentScore;
+import cz.cuni.mff.peckam.bioinf.alignments.NucleotideSequence;
+import cz.cuni.mff.peckam.bioinf.alignments.OverlapAlignmentProblem;
+
+/**
+ * Strategy which computes the overlaps of all pairs of reads once and orders the reads by the greedy superstring
+ * heuristic.
+ * <p>
+ * Every pair of reads is aligned by {@link OverlapAlignmentProblem} and the best alignment gives either the
+ * containment of the shorter read, or an edge of the {@link OverlapGraph} in the direction of the overlap. The edges
+ * are then chosen greedily by their scores, skipping those which would give a read two successors or two predecessors,
+ * or which would close a cycle (detected by a union-find structure). The chosen edges form paths of reads, and the
+ * paths (and the reads connected to no other read) are merged to the superstring one by one, always the one best
+ * overlapping it, by {@link AlignmentResult#mergeSeq2ToSeq1()}, which also absorbs the paths it contains. See
+ * {@link #getSuperstring()}.
+ * <p>
+ * The remaining reads are given in the order of the paths, followed by the contained reads.
+ * <p>
+ * Optionally, the exact containments and suffix-prefix overlaps are first found by {@link ExactOverlapIndex}, and only
+ * the residual pairs of reads (neither of them exactly contained and with no exact overlap) are aligned.
+ *
+ * @author Martin Pecka
+ */
+public class OverlapGraphAssemblyStrategy implements GenomeAssemblyStrategy
+{
+    /** The default value of the minimum overlap score. */
+    public static final int         DEFAULT_MIN_OVERLAP_SCORE = 10;
+
+    /** The executor to align the pairs of reads on, or <code>null</code> to align them one by one. */
+    private final ExecutorService   executor;
+
+    /** Overlaps with lower score don't form edges of the graph. */
+    private final int               minOverlapScore;
+
+    /** Number of consecutive k-mers from which one minimizer is chosen. 0 if the minimizer index is not used. */
+    private int                     minimizerWindow = 0;
+
+    /** Length of the minimizer k-mers. */
+    private int                     minimizerLength = 0;
+
+    /** The minimum number of minimizers shared by the pairs of reads which are aligned. */
+    private int                     minSharedMinimizers = 0;
+
+    /** Whether the exact overlaps are found by {@link ExactOverlapIndex} before the alignments. */
+    private boolean                 exactOverlaps       = false;
+
+    /** The metrics to record the alignments to, <code>null</code> if they aren't recorded. */
+    private AssemblyMetrics         metrics             = null;
+
+    /** The remaining reads. */
+    private List<GenomeRead>        reads;
+
+    /** The superstring of all the reads. */
+    private NucleotideSequence      superstring;
+
+    /**
+     * Create the strategy aligning the pairs of reads one by one.
+     */
+    public OverlapGraphAssemblyStrategy()
+    {
+        this(null, DEFAULT_MIN_OVERLAP_SCORE);
+    }
+
+    /**
+     * @param executor The executor to align the pairs of reads on, or <code>null</code> to align them one by one.
+     * @param minOverlapScore Overlaps with lower score don't form edges of the graph. At least 1.
+     */
+    public OverlapGraphAssemblyStrategy(ExecutorService executor, int minOverlapScore)
+    {
+        if (minOverlapScore < 1)
+            throw new IllegalArgumentException("The minimum overlap score has to be positive.");
+
+        this.executor = executor;
+        this.minOverlapScore = minOverlapScore;
+    }
+
+    /**
+     * Align only the pairs of reads which share at least the given number of minimizers (see {@link MinimizerIndex}).
+     * 
+     * @param w Number of consecutive k-mers from which one minimizer is chosen. 0 to align all pairs.
+     * @param k Length of the k-mers.
+     * @param minShared The minimum number of shared minimizers.
+     */
+    public void setMinimizerIndex(int w, int k, int minShared)
+    {
+        this.minimizerWindow = w;
+        this.minimizerLength = k;
+        this.minSharedMinimizers = minShared;
+    }
+
+    /**
+     * Find the exact containments and suffix-prefix overlaps of the reads by {@link ExactOverlapIndex} and align only
+     * the residual pairs of reads.
+     * <p>
+     * The exact overlap of a pair is used even if the pair has a longer overlap with errors.
+     * 
+     * @param exactOverlaps Whether to find the exact overlaps first.
+     */
+    public void setExactOverlaps(boolean exactOverlaps)
+    {
+        this.exactOverlaps = exactOverlaps;
+    }
+
+    @Override
+    public void setMetrics(AssemblyMetrics metrics)
+    {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void init(List<GenomeRead> reads)
+    {
+        // longer reads first, so that only the second read of a pair can be contained in the first one
+        final List<GenomeRead> sorted = new ArrayList<>(reads);
+        Collections.sort(sorted, new Comparator<GenomeRead>() {
+            @Override
+            public int compare(GenomeRead o1, GenomeRead o2)
+            {
+                return Integer.compare(o2.getRead().length(), o1.getRead().length());
+            }
+        });
+
+        final int count = sorted.size();
+        final boolean[] contained = new boolean[count];
+        final OverlapGraph graph = computeOverlaps(sorted, contained);
+
+        // the greedy choice of the edges
+        final int[] next = new int[count], previous = new int[count], covered = new int[count];
+        final int[] components = new int[count];
+        for (int r = 0; r < count; r++) {
+            next[r] = previous[r] = -1;
+            components[r] = r;
+        }
+        for (int e : graph.getEdgesByScore()) {
+            final int from = graph.getFrom(e), to = graph.getTo(e);
+            if (contained[from] || contained[to] || next[from] >= 0 || previous[to] >= 0)
+                continue;
+
+            final int fromComponent = find(components, from), toComponent = find(components, to);
+            if (fromComponent == toComponent)
+                continue;
+            components[toComponent] = fromComponent;
+
+            next[from] = to;
+            previous[to] = from;
+            covered[to] = graph.getCovered(e);
+        }
+
+        // walk the paths
+        this.reads = new ArrayList<>(count);
+        final List<NucleotideSequence> paths = new ArrayList<>();
+        for (int r = 0; r < count; r++) {
+            if (contained[r] || previous[r] >= 0)
+                continue;
+
+            final NucleotideSequence path = new NucleotideSequence();
+            for (int read = r; read >= 0; read = next[read]) {
+                final NucleotideSequence sequence = sorted.get(read).getRead();
+                path.append(sequence.subSequence(Math.min(covered[read], sequence.length()), sequence.length()));
+                this.reads.add(sorted.get(read));
+            }
+            paths.add(path);
+        }
+        for (int r = 0; r < count; r++) {
+            if (contained[r])
+                this.reads.add(sorted.get(r));
+        }
+
+        this.superstring = mergePaths(paths);
+    }
+
+    /**
+     * @return The superstring of all the reads, the paths chosen in the overlap graph merged together.
+     */
+    public NucleotideSequence getSuperstring()
+    {
+        return superstring;
+    }
+
+    @Override
+    public GenomeRead getFirstRead()
+    {
+        return reads.get(0);
+    }
+
+    @Override
+    public List<GenomeRead> getRemainingReads()
+    {
+        return reads;
+    }
+
+    @Override
+    public boolean hasMoreReads()
+    {
+        return !reads.isEmpty();
+    }
+
+    @Override
+    public void addRead(GenomeRead read)
+    {
+        throw new UnsupportedOperationException("The overlap graph is built from the reads given to init().");
+    }
+
+    @Override
+    public GenomeRead getBestCandidate(NucleotideSequence consensus)
+    {
+        return null;
+    }
+
+    @Override
+    public void readUsed(GenomeRead read)
+    {
+        reads.remove(read);
+    }
+
+    /**
+     * Merge the paths to a superstring the same way the consensus loop of {@link SuperstringFinder} merges the reads:
+     * starting with the longest path, always the path best overlapping the superstring is merged to it.
+     *
+     * @param paths The paths of the reads, some of them single reads connected to no other read. Will be emptied.
+     * @return The superstring of the paths.
+     */
+    private NucleotideSequence mergePaths(List<NucleotideSequence> paths)
+    {
+        if (paths.isEmpty())
+            return new NucleotideSequence();
+
+        int longest = 0;
+        for (int p = 1; p < paths.size(); p++) {
+            if (paths.get(p).length() > paths.get(longest).length())
+                longest = p;
+        }
+        final NucleotideSequence result = paths.remove(longest);
+
+        while (!paths.isEmpty()) {
+            int best = -1, bestScore = Integer.MIN_VALUE;
+            for (int p = 0; p < paths.size(); p++) {
+                final NucleotideSequence path = paths.get(p);
+                if (path.length() == 0)
+                    continue;
+                final int score = new OverlapAlignmentProblem(result, path, 1, -1, -1).computeScore().getScore();
+                if (metrics != null)
+                    metrics.recordAlignment((long) result.length() * path.length());
+                if (score > bestScore) {
+                    best = p;
+                    bestScore = score;
+                }
+            }
+            if (best < 0)
+                break;
+
+            final NucleotideSequence path = paths.remove(best);
+            new OverlapAlignmentProblem(result, path, 1, -1, -1).compute().mergeSeq2ToSeq1();
+            if (metrics != null)
+                metrics.recordAlignment((long) result.length() * path.length());
+        }
+        return result;
+    }
+
+    /**
+     * Align all pairs of reads and build the overlap graph.
+     *
+     * @param sorted The reads sorted by their lengths in descending order.
+     * @param contained Output array, the items of the reads contained in some other read are set to true.
+     * @return The overlap graph.
+     */
+    private OverlapGraph computeOverlaps(final List<GenomeRead> sorted, boolean[] contained)
+    {
+        final MinimizerIndex index = (minimizerWindow > 0) ? new MinimizerIndex(sorted, minimizerWindow,
+                minimizerLength) : null;
+
+        final OverlapGraph result = new OverlapGraph();
+        final boolean[] exactlyContained;
+        final LongIntListMap exactPairs;
+        if (exactOverlaps) {
+            final ExactOverlapIndex exact = new ExactOverlapIndex(sorted);
+            exactlyContained = exact.findContainedReads(executor);
+            System.arraycopy(exactlyContained, 0, contained, 0, contained.length);
+            if (metrics != null) {
+                int count = 0;
+                for (boolean c : exactlyContained)
+                    count += c ? 1 : 0;
+                metrics.recordRedundantReads(0, count);
+            }
+
+            final OverlapGraph exactEdges = exact.findOverlaps(minOverlapScore, exactlyContained);
+            exactPairs = new LongIntListMap();
+            for (int e = 0; e < exactEdges.size(); e++) {
+                exactPairs.add(getPairKey(exactEdges.getFrom(e), exactEdges.getTo(e)), e);
+            }
+            result.addAll(exactEdges);
+        } else {
+            exactlyContained = null;
+            exactPairs = null;
+        }
+
+        // one task per read aligns it to all the following reads
+        final List<Callable<OverlapGraph>> tasks = new ArrayList<>(sorted.size());
+        for (int r = 0; r < sorted.size() && executor != null; r++) {
+            final int first = r;
+            tasks.add(new Callable<OverlapGraph>() {
+                @Override
+                public OverlapGraph call()
+                {
+                    return computeOverlaps(sorted, first, index, exactlyContained, exactPairs);
+                }
+            });
+        }
+
+        final List<OverlapGraph> rows = new ArrayList<>(sorted.size());
+        if (executor != null) {
+            try {
+                for (Future<OverlapGraph> future : executor.invokeAll(tasks))
+                    rows.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while computing the overlaps.", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) e.getCause();
+                throw new IllegalStateException(e.getCause());
+            }
+        } else {
+            for (int r = 0; r < sorted.size(); r++)
+                rows.add(computeOverlaps(sorted, r, index, exactlyContained, exactPairs));
+        }
+
+        // containments are stored as self-loops
+        for (OverlapGraph row : rows) {
+            for (int e = 0; e < row.size(); e++) {
+                if (row.getFrom(e) == row.getTo(e))
+                    contained[row.getTo(e)] = true;
+            }
+            result.addAll(row);
+        }
+        return result;
+    }
+
+    /**
+     * Align the given read to all the following ones.
+     *
+     * @param sorted The reads sorted by their lengths in descending order.
+     * @param first Index of the read.
+     * @param index Index of the minimizers of the sorted reads, or <code>null</code> to align all pairs.
+     * @param exactlyContained The reads exactly contained in other reads, which aren't aligned, or <code>null</code>.
+     * @param exactPairs The pairs of reads with an exact overlap, which aren't aligned, or <code>null</code>.
+     * @return The overlap edges found. A contained read is represented by an edge from the read to itself.
+     */
+    private OverlapGraph computeOverlaps(List<GenomeRead> sorted, int first, MinimizerIndex index,
+            boolean[] exactlyContained, LongIntListMap exactPairs)
+    {
+        final OverlapGraph result = new OverlapGraph();
+        if (exactlyContained != null && exactlyContained[first])
+            return result;
+
+        final NucleotideSequence read1 = sorted.get(first).getRead();
+        final int[] candidates = (index != null) ? index.findCandidateIndices(read1, minSharedMinimizers) : null;
+
+        for (int c = 0; c < (candidates != null ? candidates.length : sorted.size()); c++) {
+            final int second = (candidates != null) ? candidates[c] : c;
+            if (second <= first)
+                continue;
+            if (exactlyContained != null && exactlyContained[second])
+                continue;
+            if (exactPairs != null && exactPairs.getFirst(getPairKey(first, second)) >= 0)
+                continue;
+
+            final NucleotideSequence read2 = sorted.get(second).getRead();
+            if (read1.length() == 0 || read2.length() == 0)
+                continue;
+
+            final AlignmentScore score = new OverlapAlignmentProblem(read1, read2, 1, -1, -1).computeScore();
+            if (metrics != null)
+                metrics.recordAlignment((long) read1.length() * read2.length());
+
+            if (score.doesSeq1ContainSeq2()
+                    && score.getScore() > read2.length() * SuperstringFinder.MIN_SUBSTRING_SIMILARITY) {
+                if (metrics != null)
+                    metrics.recordContainmentHit();
+                result.addEdge(second, second, score.getScore(), read2.length());
+            } else if (score.getScore() >= minOverlapScore) {
+                // the start item (1, 1) starts both of the sequences
+                final boolean startsRead1 = score.getStart1() == 0 || score.getStart1() == 1 && score.getStart2() == 1;
+                final boolean startsRead2 = score.getStart2() == 0 || score.getStart1() == 1 && score.getStart2() == 1;
+
+                if (startsRead2 && score.getEnd1() == read1.length() && score.getEnd2() < read2.length())
+                    result.addEdge(first, second, score.getScore(), score.getEnd2());
+                else if (startsRead1 && score.getEnd2() == read2.length() && score.getEnd1() < read1.length())
+                    result.addEdge(second, first, score.getScore(), score.getEnd1());
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @param read1 A read.
+     * @param read2 Another read.
+     * @return The key of the unordered pair of the reads.
+     */
+    private static long getPairKey(int read1, int read2)
+    {
+        return ((long) Math.min(read1, read2) << 32) | Math.max(read1, read2);
+    }
+
+    /**
+     * Find the representative of the component of the given read (with path halving).
+     *
+     * @param components The union-find parents of the reads.
+     * @param read The read.
+     * @return The representative read.
+     */
+    private static int find(int[] components, int read)
+    {
+        int r = read;
+        while (components[r] != r) {
+            components[r] = components[components[r]];
+            r = components[r];
+        }
+        return r;
+    }
+}
@@ -0,0 +1,329 @@
+/**  */
+package cz.cuni.mff.peckam.bioinf.superstring;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import cz.cuni.mff.peckam.bioinf.alignments.NucleotideSequence;
+import cz.cuni.mff.peckam.bioinf.alignments.WindowOverlapAlignmentProblem;
+
+/**
+ * Strategy which chooses the read to merge from priority queues of cached overlap scores, so that not all the remaining
+ * reads have to be aligned in every iteration.
+ * <p>
+ * Every read has an entry in the queue of the prefix of the consensus sequence and one in the queue of the suffix. The
+ * scores are computed by aligning the read to the window of the consensus end (see
+ * {@link WindowOverlapAlignmentProblem}), which is longer than the longest read by a slack. Every score is tagged with
+ * the version of the end it was computed against, which is the number of characters added to the consensus that may
+ * have changed the end window so far. Merging a read to one end of the consensus therefore leaves the scores against
+ * the other end valid.
+ * <p>
+ * With the unit match bonus, adding <code>d</code> characters to the end window increases the score of a read by at
+ * most <code>d</code>, so a score computed against an older version plus the difference of the versions is an upper
+ * bound of the current score. The queues are ordered by these bounds (all entries of a queue are shifted by the same
+ * amount when the version changes, so their order is kept), and the entry with the highest bound is taken. If its
+ * version is outdated, the read is re-scored against the current window and returned to the queue, otherwise its score
+ * is the best of all the reads and the read is the next one to merge. Only a handful of reads is aligned in an
+ * iteration.
+ * <p>
+ * The reads added by {@link #addRead(GenomeRead)} get new entries in both queues. If a read is longer than the
+ * previous ones, the end windows are extended and both versions are increased by the extension, which keeps the
+ * bounds valid.
+ * <p>
+ * The options of {@link SuperstringFinder} concerning the candidate alignments don't apply to the reads chosen by this
+ * strategy.
+ *
+ * @author Martin Pecka
+ */
+public class PriorityQueueAssemblyStrategy implements GenomeAssemblyStrategy
+{
+    /** The default number of characters by which the end windows are longer than the longest read. */
+    public static final int          DEFAULT_WINDOW_SLACK = 10;
+
+    /** The end windows are longer than the longest read by this number of characters. */
+    private final int                windowSlack;
+
+    /** The remaining reads. */
+    private List<GenomeRead>         reads;
+
+    /** The merged reads whose entries may still be in the queues. */
+    private final Set<GenomeRead>    used                 = new HashSet<>();
+
+    /** The entries of the prefix window, the highest bound first. */
+    private PriorityQueue<Candidate> prefixQueue;
+
+    /** The entries of the suffix window, the highest bound first. */
+    private PriorityQueue<Candidate> suffixQueue;
+
+    /** Length of the end windows of the consensus. */
+    private int                      window;
+
+    /** Length of the consensus when the versions were last updated, -1 before the first update. */
+    private int                      previousLength       = -1;
+
+    /** The prefix window of the consensus when the versions were last updated. */
+    private NucleotideSequence       previousPrefix       = null;
+
+    /** The suffix window of the consensus when the versions were last updated. */
+    private NucleotideSequence       previousSuffix       = null;
+
+    /** Index of the next read added by {@link #addRead(GenomeRead)}. */
+    private int                      nextIndex            = 0;
+
+    /** The version of the prefix window. */
+    private int                      prefixVersion        = 0;
+
+    /** The version of the suffix window. */
+    private int                      suffixVersion        = 0;
+
+    /** The metrics to record the alignments to, <code>null</code> if they aren't recorded. */
+    private AssemblyMetrics          metrics              = null;
+
+    /**
+     * Create the strategy with the default window slack.
+     */
+    public PriorityQueueAssemblyStrategy()
+    {
+        this(DEFAULT_WINDOW_SLACK);
+    }
+
+    /**
+     * @param windowSlack The end windows are longer than the longest read by this number of characters.
+     */
+    public PriorityQueueAssemblyStrategy(int windowSlack)
+    {
+        if (windowSlack < 0)
+            throw new IllegalArgumentException("The window slack can't be negative.");
+
+        this.windowSlack = windowSlack;
+    }
+
+    @Override
+    public void setMetrics(AssemblyMetrics metrics)
+    {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void init(List<GenomeRead> reads)
+    {
+        this.reads = new ArrayList<>(reads);
+        Collections.sort(this.reads, new Comparator<GenomeRead>() {
+            @Override
+            public int compare(GenomeRead o1, GenomeRead o2)
+            {
+                return Integer.compare(o2.getRead().length(), o1.getRead().length());
+            }
+        });
+
+        window = (this.reads.isEmpty() ? 0 : this.reads.get(0).getRead().length()) + windowSlack;
+        used.clear();
+        previousLength = -1;
+        previousPrefix = previousSuffix = null;
+        prefixVersion = suffixVersion = 0;
+
+        final Comparator<Candidate> comparator = new Comparator<Candidate>() {
+            @Override
+            public int compare(Candidate o1, Candidate o2)
+            {
+                if (o1.key != o2.key)
+                    return Integer.compare(o2.key, o1.key);
+                return Integer.compare(o1.index, o2.index);
+            }
+        };
+        prefixQueue = new PriorityQueue<>(this.reads.size() + 1, comparator);
+        suffixQueue = new PriorityQueue<>(this.reads.size() + 1, comparator);
+        for (int r = 0; r < this.reads.size(); r++) {
+            prefixQueue.add(new Candidate(this.reads.get(r), r, false));
+            suffixQueue.add(new Candidate(this.reads.get(r), r, true));
+        }
+        nextIndex = this.reads.size();
+    }
+
+    @Override
+    public GenomeRead getFirstRead()
+    {
+        return reads.get(0);
+    }
+
+    @Override
+    public List<GenomeRead> getRemainingReads()
+    {
+        return reads;
+    }
+
+    @Override
+    public boolean hasMoreReads()
+    {
+        return !reads.isEmpty();
+    }
+
+    @Override
+    public void addRead(GenomeRead read)
+    {
+        final int length = read.getRead().length();
+        int index = reads.size();
+        while (index > 0 && reads.get(index - 1).getRead().length() < length)
+            index--;
+        reads.add(index, read);
+
+        if (length + windowSlack > window) {
+            // extending the end windows by d characters increases every score by at most d
+            prefixVersion += length + windowSlack - window;
+            suffixVersion += length + windowSlack - window;
+            window = length + windowSlack;
+        }
+
+        prefixQueue.add(new Candidate(read, nextIndex, false));
+        suffixQueue.add(new Candidate(read, nextIndex, true));
+        nextIndex++;
+    }
+
+    @Override
+    public GenomeRead getBestCandidate(NucleotideSequence consensus)
+    {
+        updateVersions(consensus);
+
+        while (true) {
+            final Candidate prefixHead = getHead(prefixQueue), suffixHead = getHead(suffixQueue);
+            if (prefixHead == null || suffixHead == null)
+                return null;
+
+            final int prefixBound = getBound(prefixHead), suffixBound = getBound(suffixHead);
+            final boolean atSuffix = suffixBound > prefixBound
+                    || (suffixBound == prefixBound && suffixHead.index < prefixHead.index);
+            final Candidate candidate = atSuffix ? suffixHead : prefixHead;
+            final int version = atSuffix ? suffixVersion : prefixVersion;
+
+            // the bounds of all the other entries are at most the current score of the candidate
+            if (candidate.version == version)
+                return candidate.read;
+
+            final PriorityQueue<Candidate> queue = atSuffix ? suffixQueue : prefixQueue;
+            queue.poll();
+            candidate.version = version;
+            candidate.key = score(consensus, candidate) - version;
+            queue.add(candidate);
+        }
+    }
+
+    @Override
+    public void readUsed(GenomeRead read)
+    {
+        reads.remove(read);
+        used.add(read);
+    }
+
+    /**
+     * Find out which end windows of the consensus may have changed since the last call and increase their versions by
+     * the number of added characters.
+     *
+     * @param consensus The consensus sequence.
+     */
+    private void updateVersions(NucleotideSequence consensus)
+    {
+        final int length = consensus.length();
+
+        if (previousLength >= 0 && length != previousLength) {
+            // the characters are only added to the ends, so an unchanged end window means all of them were added to the
+            // other end
+            final boolean longEnough = length > window && previousLength > window;
+            final boolean prefixKept = longEnough
+                    && consensus.regionMatches(0, previousPrefix, 0, previousPrefix.length());
+            final boolean suffixKept = longEnough && consensus.regionMatches(length - previousSuffix.length(),
+                    previousSuffix, 0, previousSuffix.length());
+
+            if (!prefixKept)
+                prefixVersion += length - previousLength;
+            if (!suffixKept)
+                suffixVersion += length - previousLength;
+        }
+
+        previousLength = length;
+        previousPrefix = consensus.subSequence(0, Math.min(length, window));
+        previousSuffix = consensus.subSequence(Math.max(0, length - window), length);
+    }
+
+    /**
+     * Remove the entries of the merged reads from the head of the queue.
+     *
+     * @param queue The queue.
+     * @return The head of the queue, or <code>null</code> if it is empty.
+     */
+    private Candidate getHead(PriorityQueue<Candidate> queue)
+    {
+        while (!queue.isEmpty() && used.contains(queue.peek().read))
+            queue.poll();
+        return queue.peek();
+    }
+
+    /**
+     * @param candidate An entry.
+     * @return The upper bound of the score of the read against the current version of its end window.
+     */
+    private int getBound(Candidate candidate)
+    {
+        return candidate.key + (candidate.atSuffix ? suffixVersion : prefixVersion);
+    }
+
+    /**
+     * Align the read of the candidate to its end window of the consensus.
+     *
+     * @param consensus The consensus sequence.
+     * @param candidate The candidate.
+     * @return The score of the alignment.
+     */
+    private int score(NucleotideSequence consensus, Candidate candidate)
+    {
+        final NucleotideSequence read = candidate.read.getRead();
+        if (read.length() == 0 || consensus.length() == 0)
+            return 0;
+
+        final int length = consensus.length();
+        final int start = candidate.atSuffix ? Math.max(0, length - window) : 0;
+        final int end = candidate.atSuffix ? length : Math.min(length, window);
+        if (metrics != null)
+            metrics.recordAlignment((long) (end - start) * read.length());
+        return new WindowOverlapAlignmentProblem(consensus, start, end, read, 1, -1, -1).computeScore().getScore();
+    }
+
+    /**
+     * An entry of a queue, the score of a read against one end of the consensus.
+     *
+     * @author Martin Pecka
+     */
+    private static final class Candidate
+    {
+        /** The read. */
+        private final GenomeRead read;
+        /** Index of the read in the order of the reads, used to break the ties. */
+        private final int        index;
+        /** True if the score is against the suffix window, false for the prefix one. */
+        private final boolean    atSuffix;
+        /**
+         * The score minus the version it was computed against. Before the read is scored for the first time, its
+         * length (which bounds any score).
+         */
+        private int              key;
+        /** The version of the end window the score was computed against, -1 if it hasn't been computed yet. */
+        private int              version = -1;
+
+        /**
+         * @param read The read.
+         * @param index Index of the read in the order of the reads.
+         * @param atSuffix True if the score is against the suffix window, false for the prefix one.
+         */
+        private Candidate(GenomeRead read, int index, boolean atSuffix)
+        {
+            this.read = read;
+            this.index = index;
+            this.atSuffix = atSuffix;
+            this.key = read.getRead().length();
+        }
+    }
+}
@@ -1,85 +1,579 @@
 /**  */
 package cz.cuni.mff.peckam.bioinf.superstring;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Queue;
 import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import cz.cuni.mff.peckam.bioinf.alignments.NucleotideSequence;
 
 /**
  * Generate test data for genome assembly.
- * 
+ * <p>
+ * A random genome is generated and reads are sampled from it, with substitutions, insertions and deletions of bases.
+ * The genome and the reads are generated in blocks, every block from its own random generator split from the one
+ * given by the seed, so the same seed gives the same data no matter how many threads generate the blocks. The blocks
+ * of the reads are generated on the executor and written to the output file as soon as all the previous blocks have
+ * been written, so only a few blocks are held in memory.
+ *
  * @author Martin Pecka
  */
 public class RandomAssemblyDataGenerator
 {
+    /**
+     * The formats of the generated files.
+     *
+     * @author Martin Pecka
+     */
+    public enum Format
+    {
+        /** The genome on the first line and one read on each of the following lines. */
+        PLAIN,
+        /** FASTA, the reads only. */
+        FASTA,
+        /** FASTQ with constant qualities, the reads only. */
+        FASTQ
+    }
+
+    /** Number of bases of the genome generated by one task. */
+    private static final int      GENOME_BLOCK_SIZE = 1 << 20;
+
+    /** The maximum number of reads generated by one task. */
+    private static final int      READ_BLOCK_SIZE   = 4096;
+
+    /** The maximum number of bytes of the formatted reads of one task (unless a single read is longer). */
+    private static final long     READ_BLOCK_BYTES  = 16L << 20;
+
+    /** The maximum number of bytes of a formatted read (the longest array most JVMs can allocate). */
+    private static final long     MAX_READ_BYTES    = Integer.MAX_VALUE - 8;
+
+    /** The bases. */
+    private static final byte[]   BASES             = { 'a', 'c', 'g', 't' };
+
+    /** The quality written for all the bases to the FASTQ files. */
+    private static final byte     QUALITY           = 'I';
+
+    /** Length of the genome. */
+    private final int             length;
+
+    /** The minimum length of a read. */
+    private final int             minReadLength;
+
+    /** The length all reads are shorter than. */
+    private final int             maxReadLength;
+
+    /** Seed of the random generator. */
+    private final long            seed;
+
+    /** Probability that a base of a read is replaced by a random base. */
+    private double                substitutionRate  = 0;
+
+    /** Probability that a random base is inserted to a read before a base of the genome. */
+    private double                insertionRate     = 0;
+
+    /** Probability that a base of the genome is left out of a read. */
+    private double                deletionRate      = 0;
+
+    /** The executor to generate the blocks on, or <code>null</code> to generate them one by one. */
+    private ExecutorService       executor          = null;
 
     /**
      * @param args int length, int minReadLength, int maxReadLength, int numReads, double errorRate, String
-     *            resultSavePath
+     *            resultSavePath, optionally followed by <code>--seed long</code>, <code>--coverage double</code> (which
+     *            overrides numReads), <code>--insertion-rate double</code>, <code>--deletion-rate double</code>,
+     *            <code>--format plain|fasta|fastq</code> and <code>--reference path</code> (the file to write the
+     *            genome to in the FASTA format). The errorRate is the substitution rate.
+     * @throws IOException If the output can't be written.
      */
-    public static void main(String[] args)
+    public static void main(String[] args) throws IOException
     {
-        if (args.length != 6) {
-            System.out.println("Please, enter these arguments: \n"+
-                    "int length, int minReadLength, int maxReadLength, int numReads, double errorRate, string resultSavePath");
+        if (args.length < 6 || args.length % 2 != 0) {
+            System.out.println("Please, enter these arguments: \n"
+                    + "int length, int minReadLength, int maxReadLength, int numReads, double errorRate, "
+                    + "string resultSavePath [--seed long] [--coverage double] [--insertion-rate double] "
+                    + "[--deletion-rate double] [--format plain|fasta|fastq] [--reference path]");
             System.exit(-1);
         }
-        
+
         final int length = Integer.parseInt(args[0]);
         final int minReadLength = Integer.parseInt(args[1]);
         final int maxReadLength = Integer.parseInt(args[2]);
-        final int numReads = Integer.parseInt(args[3]);
+        long numReads = Long.parseLong(args[3]);
         final double errorRate = Double.parseDouble(args[4]);
         final String resultSavePath = args[5];
-        
-        final char[] originalSequence = new char[length];
-        final List<char[]> reads = new ArrayList<>(numReads);
-        
-        final char[] chars = new char[] {'a', 'c', 'g', 't'};
-        final Random random = new Random();
-        
-        // generate original sequence
-        for (int i = 0; i < originalSequence.length; i++) {
-            originalSequence[i] = chars[random.nextInt(chars.length)];
+
+        long seed = new Random().nextLong();
+        double insertionRate = 0, deletionRate = 0;
+        Format format = Format.PLAIN;
+        String referencePath = null;
+        for (int i = 6; i < args.length; i += 2) {
+            switch (args[i]) {
+                case "--seed":
+                    seed = Long.parseLong(args[i + 1]);
+                    break;
+                case "--coverage":
+                    numReads = getNumReads(length, minReadLength, maxReadLength, Double.parseDouble(args[i + 1]));
+                    break;
+                case "--insertion-rate":
+                    insertionRate = Double.parseDouble(args[i + 1]);
+                    break;
+                case "--deletion-rate":
+                    deletionRate = Double.parseDouble(args[i + 1]);
+                    break;
+                case "--format":
+                    format = Format.valueOf(args[i + 1].toUpperCase());
+                    break;
+                case "--reference":
+                    referencePath = args[i + 1];
+                    break;
+                default:
+                    System.out.println("Unknown option " + args[i]);
+                    System.exit(-1);
+            }
+        }
+
+        final RandomAssemblyDataGenerator generator = new RandomAssemblyDataGenerator(length, minReadLength,
+                maxReadLength, seed);
+        generator.setErrorRates(errorRate, insertionRate, deletionRate);
+        generator.setExecutor(ForkJoinPool.commonPool());
+
+        final NucleotideSequence genome = generator.generateGenome();
+        generator.writeReads(genome, numReads, format, new File(resultSavePath));
+        if (referencePath != null)
+            writeReference(genome, new File(referencePath));
+
+        System.out.println("Generation complete (seed " + seed + ", " + numReads + " reads)");
+    }
+
+    /**
+     * @param length Length of the genome.
+     * @param minReadLength The minimum length of a read.
+     * @param maxReadLength The length all reads are shorter than.
+     * @param seed Seed of the random generator, the same seed gives the same data.
+     */
+    public RandomAssemblyDataGenerator(int length, int minReadLength, int maxReadLength, long seed)
+    {
+        if (minReadLength < 1 || maxReadLength <= minReadLength)
+            throw new IllegalArgumentException("Invalid read lengths " + minReadLength + " and " + maxReadLength + ".");
+        if (getMaxReadBytes(maxReadLength) > MAX_READ_BYTES)
+            throw new IllegalArgumentException("The reads can't be longer than " + (MAX_READ_BYTES - 30) / 2 + ".");
+        if (length < maxReadLength)
+            throw new IllegalArgumentException("The genome has to be at least as long as the longest read.");
+
+        this.length = length;
+        this.minReadLength = minReadLength;
+        this.maxReadLength = maxReadLength;
+        this.seed = seed;
+    }
+
+    /**
+     * Set the probabilities of the errors in the reads. Every base of the genome covered by a read is independently
+     * deleted, substituted, or preceded by an inserted base with the given probabilities.
+     *
+     * @param substitutionRate Probability that a base of a read is replaced by a random base.
+     * @param insertionRate Probability that a random base is inserted to a read before a base of the genome.
+     * @param deletionRate Probability that a base of the genome is left out of a read.
+     */
+    public void setErrorRates(double substitutionRate, double insertionRate, double deletionRate)
+    {
+        if (substitutionRate < 0 || insertionRate < 0 || deletionRate < 0
+                || substitutionRate + insertionRate + deletionRate > 1)
+            throw new IllegalArgumentException("The error rates have to be non-negative with the sum at most 1.");
+
+        this.substitutionRate = substitutionRate;
+        this.insertionRate = insertionRate;
+        this.deletionRate = deletionRate;
+    }
+
+    /**
+     * Generate the blocks on the given executor.
+     *
+     * @param executor The executor, <code>null</code> to generate the blocks one by one.
+     */
+    public void setExecutor(ExecutorService executor)
+    {
+        this.executor = executor;
+    }
+
+    /**
+     * Compute the number of reads covering the genome the given number of times on average.
+     *
+     * @param length Length of the genome.
+     * @param minReadLength The minimum length of a read.
+     * @param maxReadLength The length all reads are shorter than.
+     * @param coverage The average number of reads covering a base of the genome.
+     * @return The number of reads.
+     */
+    public static long getNumReads(int length, int minReadLength, int maxReadLength, double coverage)
+    {
+        final double meanReadLength = (minReadLength + maxReadLength - 1) / 2.0;
+        return (long) Math.ceil(coverage * length / meanReadLength);
+    }
+
+    /**
+     * Generate a random genome and reads sampled from it, in memory.
+     *
+     * @param length Length of the original sequence.
+     * @param minReadLength The minimum length of a read.
+     * @param maxReadLength The length all reads are shorter than.
+     * @param numReads Number of reads.
+     * @param errorRate Probability that a base of a read is replaced by a random base.
+     * @param seed Seed of the random generator, the same seed gives the same data.
+     * @return The generated input.
+     */
+    public static GenomeAssemblyInput generate(int length, int minReadLength, int maxReadLength, int numReads,
+            double errorRate, long seed)
+    {
+        final RandomAssemblyDataGenerator generator = new RandomAssemblyDataGenerator(length, minReadLength,
+                maxReadLength, seed);
+        generator.setErrorRates(errorRate, 0, 0);
+
+        final NucleotideSequence genome = generator.generateGenome();
+        return new GenomeAssemblyInput(genome, generator.generateReads(genome, numReads));
+    }
+
+    /**
+     * Generate the genome.
+     *
+     * @return The genome.
+     */
+    public NucleotideSequence generateGenome()
+    {
+        final SplittableRandom genomeRandom = new SplittableRandom(seed).split();
+
+        final List<Callable<NucleotideSequence>> tasks = new ArrayList<>();
+        for (int start = 0; start < length; start += GENOME_BLOCK_SIZE) {
+            final SplittableRandom random = genomeRandom.split();
+            final int blockLength = Math.min(GENOME_BLOCK_SIZE, length - start);
+            tasks.add(new Callable<NucleotideSequence>() {
+                @Override
+                public NucleotideSequence call()
+                {
+                    final NucleotideSequence block = new NucleotideSequence(blockLength);
+                    for (int i = 0; i < blockLength; i++) {
+                        block.append((char) BASES[random.nextInt(BASES.length)]);
+                    }
+                    return block;
+                }
+            });
+        }
+
+        final NucleotideSequence genome = new NucleotideSequence(length);
+        for (NucleotideSequence block : run(tasks)) {
+            genome.append(block);
+        }
+        return genome;
+    }
+
+    /**
+     * Generate the reads in memory.
+     *
+     * @param genome The genome generated by {@link #generateGenome()}.
+     * @param numReads Number of reads.
+     * @return The reads, the same ones as written by {@link #writeReads(NucleotideSequence, long, Format, File)}.
+     */
+    public List<NucleotideSequence> generateReads(final NucleotideSequence genome, int numReads)
+    {
+        final SplittableRandom readsRandom = getReadsRandom();
+
+        final int blockSize = getReadsPerBlock();
+
+        final List<Callable<List<NucleotideSequence>>> tasks = new ArrayList<>();
+        for (int first = 0; first < numReads; first += blockSize) {
+            final SplittableRandom random = readsRandom.split();
+            final int count = Math.min(blockSize, numReads - first);
+            tasks.add(new Callable<List<NucleotideSequence>>() {
+                @Override
+                public List<NucleotideSequence> call()
+                {
+                    final List<NucleotideSequence> block = new ArrayList<>(count);
+                    for (int r = 0; r < count; r++) {
+                        final byte[] read = generateRead(genome, random);
+                        final NucleotideSequence sequence = new NucleotideSequence(read.length);
+                        for (byte base : read) {
+                            sequence.append((char) base);
+                        }
+                        block.add(sequence);
+                    }
+                    return block;
+                }
+            });
+        }
+
+        final List<NucleotideSequence> reads = new ArrayList<>(numReads);
+        for (List<NucleotideSequence> block : run(tasks)) {
+            reads.addAll(block);
         }
-        
-        // generate reads
-        for (int i = 0; i < numReads; i++) {
-            final int readLength = minReadLength + random.nextInt(maxReadLength - minReadLength);
-            final int readStart = random.nextInt(originalSequence.length - readLength);
-            final char[] read = Arrays.copyOfRange(originalSequence, readStart, readStart + readLength);
-            reads.add(read);
-
-            // add errors to reads
-            for (int j = 0; j < read.length; j++) {
-                if (random.nextDouble() < errorRate) {
-                    read[j] = chars[random.nextInt(chars.length)];
+        return reads;
+    }
+
+    /**
+     * Generate the reads and write them to the given file.
+     * <p>
+     * The blocks of the reads are formatted on the executor and written in their order through a file channel, at most
+     * twice as many blocks (of at most 16 MB unless the reads are longer) as there are processors are held in memory.
+     *
+     * @param genome The genome generated by {@link #generateGenome()}.
+     * @param numReads Number of reads.
+     * @param format Format of the file. Only the plain format contains the genome.
+     * @param output The file to write.
+     * @throws IOException If the file can't be written.
+     */
+    public void writeReads(final NucleotideSequence genome, long numReads, final Format format, File output)
+            throws IOException
+    {
+        final SplittableRandom readsRandom = getReadsRandom();
+        final int maxPending = 2 * Runtime.getRuntime().availableProcessors();
+        final int blockSize = getReadsPerBlock();
+
+        try (FileChannel channel = FileChannel.open(output.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (format == Format.PLAIN) {
+                writeSequence(genome, channel);
+            }
+
+            final Queue<Future<ByteBuffer>> pending = new ArrayDeque<>();
+            for (long first = 0; first < numReads; first += blockSize) {
+                final SplittableRandom random = readsRandom.split();
+                final long blockFirst = first;
+                final int count = (int) Math.min(blockSize, numReads - first);
+
+                if (executor == null) {
+                    write(formatReads(genome, random, blockFirst, count, format), channel);
+                    continue;
                 }
+                pending.add(executor.submit(new Callable<ByteBuffer>() {
+                    @Override
+                    public ByteBuffer call()
+                    {
+                        return formatReads(genome, random, blockFirst, count, format);
+                    }
+                }));
+                if (pending.size() >= maxPending)
+                    write(getResult(pending.poll()), channel);
             }
+            while (!pending.isEmpty()) {
+                write(getResult(pending.poll()), channel);
+            }
+        }
+    }
+
+    /**
+     * Write the genome to the given file in the FASTA format.
+     *
+     * @param genome The genome.
+     * @param output The file to write.
+     * @throws IOException If the file can't be written.
+     */
+    public static void writeReference(NucleotideSequence genome, File output) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(output.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(ByteBuffer.wrap(">genome\n".getBytes(StandardCharsets.US_ASCII)), channel);
+            writeSequence(genome, channel);
         }
+    }
 
-        final File output = new File(resultSavePath);
+    /**
+     * @return The random generator from which the generators of the blocks of the reads are split.
+     */
+    private SplittableRandom getReadsRandom()
+    {
+        final SplittableRandom random = new SplittableRandom(seed);
+        // the first split generator generates the genome
+        random.split();
+        return random.split();
+    }
+
+    /**
+     * @return Number of reads generated by one task, so that their formatted bytes fit in {@link #READ_BLOCK_BYTES}.
+     *         At least one read.
+     */
+    private int getReadsPerBlock()
+    {
+        return (int) Math.max(1, Math.min(READ_BLOCK_SIZE, READ_BLOCK_BYTES / getMaxReadBytes(maxReadLength)));
+    }
 
-        try (BufferedWriter outputWriter = new BufferedWriter(new FileWriter(output))) {
-            outputWriter.write(originalSequence);
-            outputWriter.write("\n");
+    /**
+     * @param maxReadLength The length all reads are shorter than.
+     * @return The maximum number of bytes of a formatted read: a header of at most 26 bytes, the bases and the
+     *         qualities, and 4 other bytes.
+     */
+    private static long getMaxReadBytes(int maxReadLength)
+    {
+        return 2L * maxReadLength + 30;
+    }
 
-            for (char[] read : reads) {
-                outputWriter.write(read);
-                outputWriter.write("\n");
+    /**
+     * Sample a read from the genome.
+     *
+     * @param genome The genome.
+     * @param random The random generator.
+     * @return The bases of the read.
+     */
+    private byte[] generateRead(NucleotideSequence genome, SplittableRandom random)
+    {
+        final int readLength = minReadLength + random.nextInt(maxReadLength - minReadLength);
+        final int readStart = random.nextInt(genome.length() - readLength + 1);
+        final byte[] read = new byte[readLength];
+
+        int count = 0;
+        for (int position = readStart; count < readLength && position < genome.length();) {
+            final double error = random.nextDouble();
+            if (error < insertionRate) {
+                read[count++] = BASES[random.nextInt(BASES.length)];
+            } else if (error < insertionRate + deletionRate) {
+                position++;
+            } else if (error < insertionRate + deletionRate + substitutionRate) {
+                read[count++] = BASES[random.nextInt(BASES.length)];
+                position++;
+            } else {
+                read[count++] = (byte) genome.charAt(position++);
             }
+        }
 
-            outputWriter.flush();
+        // the deletions at the end of the genome may shorten the read
+        return (count == readLength) ? read : Arrays.copyOf(read, count);
+    }
+
+    /**
+     * Generate a block of the reads and format them.
+     *
+     * @param genome The genome.
+     * @param random The random generator of the block.
+     * @param first Index of the first read of the block.
+     * @param count Number of reads of the block.
+     * @param format Format of the file.
+     * @return The formatted reads.
+     */
+    private ByteBuffer formatReads(NucleotideSequence genome, SplittableRandom random, long first, int count,
+            Format format)
+    {
+        // at most READ_BLOCK_BYTES, or a single read, see getReadsPerBlock()
+        final long size = Math.min(MAX_READ_BYTES, count * getMaxReadBytes(maxReadLength));
+        final ByteBuffer result = ByteBuffer.allocate((int) size);
+        for (int r = 0; r < count; r++) {
+            final byte[] read = generateRead(genome, random);
+            final byte[] header = (format == Format.FASTA ? ">read" : "@read")
+                    .concat(Long.toString(first + r)).concat("\n").getBytes(StandardCharsets.US_ASCII);
+
+            if (format != Format.PLAIN)
+                result.put(header);
+            result.put(read).put((byte) '\n');
+            if (format == Format.FASTQ) {
+                result.put((byte) '+').put((byte) '\n');
+                for (int i = 0; i < read.length; i++) {
+                    result.put(QUALITY);
+                }
+                result.put((byte) '\n');
+            }
+        }
+        result.flip();
+        return result;
+    }
 
-            System.out.println("Generation complete");
-        } catch (IOException e) {
-            e.printStackTrace();
+    /**
+     * Write the bases of the sequence and a newline.
+     *
+     * @param sequence The sequence.
+     * @param channel The channel to write to.
+     * @throws IOException If the sequence can't be written.
+     */
+    private static void writeSequence(NucleotideSequence sequence, FileChannel channel) throws IOException
+    {
+        final ByteBuffer buffer = ByteBuffer.allocate(GENOME_BLOCK_SIZE);
+        for (int i = 0; i < sequence.length(); i++) {
+            if (!buffer.hasRemaining()) {
+                buffer.flip();
+                write(buffer, channel);
+                buffer.clear();
+            }
+            buffer.put((byte) sequence.charAt(i));
         }
+        if (!buffer.hasRemaining()) {
+            buffer.flip();
+            write(buffer, channel);
+            buffer.clear();
+        }
+        buffer.put((byte) '\n');
+        buffer.flip();
+        write(buffer, channel);
     }
 
+    /**
+     * Write the whole buffer.
+     *
+     * @param buffer The buffer.
+     * @param channel The channel to write to.
+     * @throws IOException If the buffer can't be written.
+     */
+    private static void write(ByteBuffer buffer, FileChannel channel) throws IOException
+    {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Run the tasks on {@link #executor}, or one by one if it is not set.
+     *
+     * @param tasks The tasks.
+     * @return The results of the tasks in their order.
+     */
+    private <T> List<T> run(List<Callable<T>> tasks)
+    {
+        final List<T> results = new ArrayList<>(tasks.size());
+        try {
+            if (executor == null) {
+                for (Callable<T> task : tasks)
+                    results.add(task.call());
+            } else {
+                for (Future<T> future : executor.invokeAll(tasks))
+                    results.add(getResult(future));
+            }
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while generating the data.", e);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        return results;
+    }
+
+    /**
+     * Wait for the result of a task.
+     *
+     * @param future The future of the task.
+     * @return The result.
+     */
+    private static <T> T getResult(Future<T> future)
+    {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while generating the data.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+    }
 }
@@ -0,0 +1,179 @@
+/**  */
+package cz.cuni.mff.peckam.bioinf.superstring;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import cz.cuni.mff.peckam.bioinf.alignments.NucleotideSequence;
+
+/**
+ * Pre-pass removing the redundant reads before the assembly, so that they don't have to be aligned in the iterations.
+ * <p>
+ * First the exact duplicates are removed: the reads are hashed in blocks on the executor, and the reads with equal
+ * hashes are compared. Then the reads which are exact substrings of the longer remaining reads are found by
+ * {@link ExactOverlapIndex}, again searching for blocks of the reads on the executor. Of the identical reads, the
+ * first one is kept. Both passes compare the real characters of the reads, so reads differing only in characters other
+ * than a, c, g and t are not redundant.
+ *
+ * @author Martin Pecka
+ */
+public class RedundantReadFilter
+{
+    /** Number of reads hashed by one task. */
+    private static final int      BLOCK_SIZE      = 1024;
+
+    /** Multiplier of the polynomial hash of the reads. */
+    private static final long     HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    /** The executor to run the tasks on, or <code>null</code> to process the reads one by one. */
+    private final ExecutorService executor;
+
+    /** Number of exact duplicates removed by the last call of {@link #filter(List)}. */
+    private int                   duplicateCount  = 0;
+
+    /** Number of contained reads removed by the last call of {@link #filter(List)}. */
+    private int                   containedCount  = 0;
+
+    /**
+     * @param executor The executor to run the tasks on, or <code>null</code> to process the reads one by one.
+     */
+    public RedundantReadFilter(ExecutorService executor)
+    {
+        this.executor = executor;
+    }
+
+    /**
+     * Remove the exact duplicates and the reads exactly contained in other reads.
+     *
+     * @param reads The reads.
+     * @return The remaining reads, in their original order.
+     */
+    public List<GenomeRead> filter(List<GenomeRead> reads)
+    {
+        final boolean[] duplicate = findDuplicates(reads);
+        final List<GenomeRead> unique = new ArrayList<>(reads.size());
+        for (int r = 0; r < reads.size(); r++) {
+            if (!duplicate[r])
+                unique.add(reads.get(r));
+        }
+
+        final boolean[] contained = new ExactOverlapIndex(unique).findContainedReads(executor);
+        final List<GenomeRead> result = new ArrayList<>(unique.size());
+        for (int r = 0; r < unique.size(); r++) {
+            if (!contained[r])
+                result.add(unique.get(r));
+        }
+
+        duplicateCount = reads.size() - unique.size();
+        containedCount = unique.size() - result.size();
+        return result;
+    }
+
+    /**
+     * @return Number of exact duplicates removed by the last call of {@link #filter(List)}.
+     */
+    public int getDuplicateCount()
+    {
+        return duplicateCount;
+    }
+
+    /**
+     * @return Number of contained reads removed by the last call of {@link #filter(List)}.
+     */
+    public int getContainedCount()
+    {
+        return containedCount;
+    }
+
+    /**
+     * Find the reads identical to some previous read.
+     *
+     * @param reads The reads.
+     * @return For every read true if some previous read is identical to it.
+     */
+    private boolean[] findDuplicates(List<GenomeRead> reads)
+    {
+        final long[] hashes = computeHashes(reads);
+        final LongIntListMap firstReads = new LongIntListMap();
+        final boolean[] result = new boolean[reads.size()];
+
+        for (int r = 0; r < reads.size(); r++) {
+            for (int entry = firstReads.getFirst(hashes[r]); entry >= 0 && !result[r]; entry = firstReads
+                    .getNext(entry)) {
+                final NucleotideSequence first = reads.get(firstReads.getValue(entry)).getRead();
+                final NucleotideSequence read = reads.get(r).getRead();
+                result[r] = first.length() == read.length() && first.regionMatches(0, read, 0, read.length());
+            }
+            if (!result[r])
+                firstReads.add(hashes[r], r);
+        }
+
+        return result;
+    }
+
+    /**
+     * Compute the hashes of all the reads on {@link #executor}.
+     *
+     * @param reads The reads.
+     * @return The hashes of the reads.
+     */
+    private long[] computeHashes(final List<GenomeRead> reads)
+    {
+        final long[] hashes = new long[reads.size()];
+        if (executor == null) {
+            computeHashes(reads, 0, reads.size(), hashes);
+            return hashes;
+        }
+
+        final List<Callable<Void>> tasks = new ArrayList<>();
+        for (int start = 0; start < reads.size(); start += BLOCK_SIZE) {
+            final int blockStart = start, blockEnd = Math.min(reads.size(), start + BLOCK_SIZE);
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call()
+                {
+                    computeHashes(reads, blockStart, blockEnd, hashes);
+                    return null;
+                }
+            });
+        }
+
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks))
+                future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing the reads.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+
+        return hashes;
+    }
+
+    /**
+     * Compute the hashes of a block of the reads.
+     *
+     * @param reads The reads.
+     * @param start Index of the first read of the block.
+     * @param end Index after the last read of the block.
+     * @param hashes The hashes of the reads. The items of the block will be set.
+     */
+    private static void computeHashes(List<GenomeRead> reads, int start, int end, long[] hashes)
+    {
+        for (int r = start; r < end; r++) {
+            final NucleotideSequence read = reads.get(r).getRead();
+            long hash = read.length();
+            for (int i = 0; i < read.length(); i++) {
+                hash = hash * HASH_MULTIPLIER + read.symbolAt(i) + 1;
+            }
+            hashes[r] = hash;
+        }
+    }
+}
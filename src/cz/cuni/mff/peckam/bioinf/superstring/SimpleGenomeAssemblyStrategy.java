@@ -5,6 +5,8 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 
+import cz.cuni.mff.peckam.bioinf.alignments.NucleotideSequence;
+
 /**
  * A dummy genome assembly strategy.
  * 
@@ -24,9 +26,9 @@ public class SimpleGenomeAssemblyStrategy implements GenomeAssemblyStrategy
             @Override
             public int compare(GenomeRead o1, GenomeRead o2)
             {
-                if (o1.getRead().size() > o2.getRead().size()) {
+                if (o1.getRead().length() > o2.getRead().length()) {
                     return -1;
-                } else if (o1.getRead().size() == o2.getRead().size()) {
+                } else if (o1.getRead().length() == o2.getRead().length()) {
                     return 0;
                 } else {
                     return 1;
@@ -53,6 +55,22 @@ public class SimpleGenomeAssemblyStrategy implements GenomeAssemblyStrategy
         return !reads.isEmpty();
     }
 
+    @Override
+    public void addRead(GenomeRead read)
+    {
+        // keep the order of init(), the read goes after all the reads of the same length
+        int index = reads.size();
+        while (index > 0 && reads.get(index - 1).getRead().length() < read.getRead().length())
+            index--;
+        reads.add(index, read);
+    }
+
+    @Override
+    public GenomeRead getBestCandidate(NucleotideSequence consensus)
+    {
+        return null;
+    }
+
     @Override
     public void readUsed(GenomeRead read)
     {
@@ -0,0 +1,184 @@
+/**  */
+package cz.cuni.mff.peckam.bioinf.superstring;
+
+import java.util.Arrays;
+
+/**
+ * Construction of suffix arrays in linear time by the SA-IS algorithm (induced sorting of the LMS substrings by Nong,
+ * Zhang and Chan).
+ *
+ * @author Martin Pecka
+ */
+final class SuffixArrays
+{
+    /**
+     * No instances.
+     */
+    private SuffixArrays()
+    {
+    }
+
+    /**
+     * Build the suffix array of the given text.
+     *
+     * @param text The text. Its symbols are from <code>0</code> to <code>alphabetSize - 1</code>, and its last symbol
+     *            has to be the only <code>0</code> in the text.
+     * @param alphabetSize Number of distinct symbols.
+     * @return The starting positions of the suffixes of the text in their lexicographic order.
+     */
+    static int[] build(int[] text, int alphabetSize)
+    {
+        final int[] sa = new int[text.length];
+        sais(text, sa, alphabetSize);
+        return sa;
+    }
+
+    /**
+     * Fill the suffix array of the text.
+     *
+     * @param s The text.
+     * @param sa The suffix array to fill.
+     * @param k Size of the alphabet.
+     */
+    private static void sais(int[] s, int[] sa, int k)
+    {
+        final int n = s.length;
+        if (n == 1) {
+            sa[0] = 0;
+            return;
+        }
+
+        // true for the S-type suffixes (smaller than the following suffix)
+        final boolean[] t = new boolean[n];
+        t[n - 1] = true;
+        for (int i = n - 2; i >= 0; i--) {
+            t[i] = s[i] < s[i + 1] || (s[i] == s[i + 1] && t[i + 1]);
+        }
+
+        final int[] bucket = new int[k];
+
+        // sort the LMS substrings
+        Arrays.fill(sa, -1);
+        getBuckets(s, bucket, k, true);
+        for (int i = 1; i < n; i++) {
+            if (isLms(t, i))
+                sa[--bucket[s[i]]] = i;
+        }
+        induce(s, sa, t, bucket, k);
+
+        // move the sorted LMS substrings to the start of the array
+        int n1 = 0;
+        for (int i = 0; i < n; i++) {
+            if (isLms(t, sa[i]))
+                sa[n1++] = sa[i];
+        }
+
+        // name the LMS substrings, the names are stored at n1 + position / 2 (LMS positions are at least 2 apart)
+        Arrays.fill(sa, n1, n, -1);
+        int name = 0, previous = -1;
+        for (int i = 0; i < n1; i++) {
+            final int position = sa[i];
+            boolean differs = false;
+            for (int d = 0; d < n; d++) {
+                if (previous < 0 || s[position + d] != s[previous + d] || t[position + d] != t[previous + d]) {
+                    differs = true;
+                    break;
+                } else if (d > 0 && (isLms(t, position + d) || isLms(t, previous + d))) {
+                    break;
+                }
+            }
+            if (differs) {
+                name++;
+                previous = position;
+            }
+            sa[n1 + position / 2] = name - 1;
+        }
+        final int[] s1 = new int[n1];
+        for (int i = n1, j = 0; i < n; i++) {
+            if (sa[i] >= 0)
+                s1[j++] = sa[i];
+        }
+
+        // sort the LMS suffixes, recursively if some of the names are equal
+        final int[] sa1 = new int[n1];
+        if (name < n1) {
+            sais(s1, sa1, name);
+        } else {
+            for (int i = 0; i < n1; i++)
+                sa1[s1[i]] = i;
+        }
+
+        // induce the order of all suffixes from the sorted LMS suffixes
+        for (int i = 1, j = 0; i < n; i++) {
+            if (isLms(t, i))
+                s1[j++] = i;
+        }
+        Arrays.fill(sa, -1);
+        getBuckets(s, bucket, k, true);
+        for (int i = n1 - 1; i >= 0; i--) {
+            final int position = s1[sa1[i]];
+            sa[--bucket[s[position]]] = position;
+        }
+        induce(s, sa, t, bucket, k);
+    }
+
+    /**
+     * Induce the order of the L-type suffixes and then of the S-type suffixes from the LMS suffixes placed at the ends
+     * of their buckets.
+     *
+     * @param s The text.
+     * @param sa The suffix array.
+     * @param t The types of the suffixes.
+     * @param bucket Array for the bucket boundaries.
+     * @param k Size of the alphabet.
+     */
+    private static void induce(int[] s, int[] sa, boolean[] t, int[] bucket, int k)
+    {
+        final int n = s.length;
+
+        getBuckets(s, bucket, k, false);
+        for (int i = 0; i < n; i++) {
+            final int j = sa[i] - 1;
+            if (j >= 0 && !t[j])
+                sa[bucket[s[j]]++] = j;
+        }
+
+        getBuckets(s, bucket, k, true);
+        for (int i = n - 1; i >= 0; i--) {
+            final int j = sa[i] - 1;
+            if (j >= 0 && t[j])
+                sa[--bucket[s[j]]] = j;
+        }
+    }
+
+    /**
+     * Compute the boundaries of the buckets of the symbols.
+     *
+     * @param s The text.
+     * @param bucket The array to fill.
+     * @param k Size of the alphabet.
+     * @param ends True to compute the ends of the buckets, false for their starts.
+     */
+    private static void getBuckets(int[] s, int[] bucket, int k, boolean ends)
+    {
+        Arrays.fill(bucket, 0);
+        for (int c : s) {
+            bucket[c]++;
+        }
+        int sum = 0;
+        for (int c = 0; c < k; c++) {
+            sum += bucket[c];
+            bucket[c] = ends ? sum : sum - bucket[c];
+        }
+    }
+
+    /**
+     * @param t The types of the suffixes.
+     * @param i A position (may be negative).
+     * @return True if the suffix at the position is a leftmost S-type one.
+     */
+    private static boolean isLms(boolean[] t, int i)
+    {
+        return i > 0 && t[i] && !t[i - 1];
+    }
+}
@@ -2,13 +2,32 @@
 package cz.cuni.mff.peckam.bioinf.superstring;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import cz.cuni.mff.peckam.bioinf.alignments.AlignmentProblem;
 import cz.cuni.mff.peckam.bioinf.alignments.AlignmentResult;
+import cz.cuni.mff.peckam.bioinf.alignments.AlignmentScore;
+import cz.cuni.mff.peckam.bioinf.alignments.BandedOverlapAlignmentProblem;
+import cz.cuni.mff.peckam.bioinf.alignments.BitParallelMatcher;
+import cz.cuni.mff.peckam.bioinf.alignments.NucleotideSequence;
 import cz.cuni.mff.peckam.bioinf.alignments.OverlapAlignmentProblem;
+import cz.cuni.mff.peckam.bioinf.alignments.WindowOverlapAlignmentProblem;
 
 /**
  * 
@@ -25,30 +44,155 @@ public class SuperstringFinder
     private final static int             MAX_ITERATIONS = 1000000;
 
     /** Minimum similarity factor of a string to be treated as substring of consensus. */
-    private final static double          MIN_SUBSTRING_SIMILARITY = 0.9;
+    final static double                  MIN_SUBSTRING_SIMILARITY = 0.9;
+
+    /** The default minimum overlap score of the reads merged as soon as they are offered. */
+    public final static int              DEFAULT_STREAMING_MIN_OVERLAP_SCORE = 40;
+
+    /** Length of the k-mers used to find the band of the candidate alignments. */
+    private int                          seedLength               = 0;
+
+    /** Width of the band of the candidate alignments. 0 if the whole DP tables are computed. */
+    private int                          bandWidth                = 0;
+
+    /** The executor to align the candidate reads on, or <code>null</code> to align them one by one. */
+    private ExecutorService              executor                 = null;
+
+    /** The end windows are longer than the longest read by this number of characters. Negative to disable them. */
+    private int                          endWindowSlack           = -1;
+
+    /** Length of the longest read of the assembled input. */
+    private int                          maxReadLength            = 0;
+
+    /** Number of consecutive k-mers from which one minimizer is chosen. 0 if the minimizer index is not used. */
+    private int                          minimizerWindow          = 0;
+
+    /** Length of the minimizer k-mers. */
+    private int                          minimizerLength          = 0;
+
+    /** The minimum number of minimizers a candidate read has to share with the consensus. */
+    private int                          minSharedMinimizers      = 0;
+
+    /** Index of the minimizers of the assembled reads, <code>null</code> if it is not used. */
+    private MinimizerIndex               minimizerIndex           = null;
+
+    /** Whether the redundant reads are removed by {@link RedundantReadFilter} before the assembly. */
+    private boolean                      exactOverlapStage        = false;
+
+    /** The cache of the scores of the candidate alignments, <code>null</code> if they aren't cached. */
+    private AlignmentCache               alignmentCache           = null;
+
+    /** The minimum overlap score of the reads merged as soon as they are offered. */
+    private int                          streamingMinScore        = DEFAULT_STREAMING_MIN_OVERLAP_SCORE;
+
+    /** The consensus assembled from the offered reads, <code>null</code> if no stream is being assembled. */
+    private NucleotideSequence           streamedConsensus        = null;
+
+    /** The metrics of the assemblies. */
+    private AssemblyMetrics              metrics                  = new AssemblyMetrics();
+
+    /** The listener of the progress of the assemblies, <code>null</code> if the progress isn't reported. */
+    private AssemblyProgressListener     progressListener         = null;
+
+    /** The minimum interval between two progress reports in nanoseconds. */
+    private long                         progressInterval         = 0;
+
+    /** The time of the last progress report, 0 if the progress hasn't been reported yet. */
+    private long                         lastProgressTime         = 0;
+
+    /** Number of the iterations choosing a read to merge in the current assembly (see {@link MergeEvent}). */
+    private long                         iteration                = 0;
 
     /**
-     * @param args String filename (the file to read input from).
+     * @param args String filename (the file to read input from, see
+     *            {@link GenomeAssemblyInput#readFromFile(File)}), optionally followed by <code>--overlap-graph</code> to
+     *            assemble the genome by {@link #assembleGenomeByOverlapGraph(GenomeAssemblyInput)}, or by
+     *            <code>--priority-queue</code> to use {@link PriorityQueueAssemblyStrategy}, by <code>--parallel</code>
+     *            to align the candidates and evaluate the result on the common fork-join pool, by
+     *            <code>--exact-overlaps</code> to remove the redundant reads and find the exact overlaps first (see
+     *            {@link #setExactOverlapStage(boolean)}), by <code>--cache</code> to cache the scores of the candidate
+     *            alignments (see {@link AlignmentCache}), and by
+     *            <code>--metrics file</code> to print the metrics of the assembly and write them (see
+     *            {@link AssemblyMetrics#toJson()}) to the given file.
+     * @throws IOException If the input file can't be read or the metrics can't be written.
      */
-    public static void main(String[] args)
+    public static void main(String[] args) throws IOException
     {
         final long startTime = System.currentTimeMillis();
 
-        final GenomeAssemblyInput input = GenomeAssemblyInput.readFromFileWithOriginalSequence(new File(args[0]));
-        System.err.println("Parse completed.");
-
-        final GenomeAssemblyStrategy strategy = new SimpleGenomeAssemblyStrategy();
+        boolean priorityQueue = false, overlapGraph = false, parallel = false, exactOverlaps = false, cached = false;
+        File metricsFile = null;
+        for (int i = 1; i < args.length; i++) {
+            if ("--priority-queue".equals(args[i]))
+                priorityQueue = true;
+            else if ("--overlap-graph".equals(args[i]))
+                overlapGraph = true;
+            else if ("--parallel".equals(args[i]))
+                parallel = true;
+            else if ("--exact-overlaps".equals(args[i]))
+                exactOverlaps = true;
+            else if ("--cache".equals(args[i]))
+                cached = true;
+            else if ("--metrics".equals(args[i]) && i + 1 < args.length)
+                metricsFile = new File(args[++i]);
+            else
+                throw new IllegalArgumentException("Unknown argument " + args[i]);
+        }
 
+        final GenomeAssemblyStrategy strategy = priorityQueue ? new PriorityQueueAssemblyStrategy()
+                : new SimpleGenomeAssemblyStrategy();
         final SuperstringFinder finder = new SuperstringFinder(strategy);
-        List<Character> result = finder.assembleGenome(input);
+        finder.setProgressListener(new AssemblyProgressListener() {
+            @Override
+            public void phaseCompleted(AssemblyMetrics.Phase phase, AssemblyMetrics metrics)
+            {
+                System.err.println(String.format("Phase %s completed in %.3f s.", phase.name().toLowerCase(Locale.ROOT),
+                        metrics.getWallTime(phase) / 1e9));
+            }
+
+            @Override
+            public void progress(int remainingReads, int consensusLength, AssemblyMetrics metrics)
+            {
+                System.err.println("Remaining reads to merge: " + remainingReads + ", consensus length "
+                        + consensusLength);
+            }
+        }, 1000);
+
+        finder.metrics.startPhase(AssemblyMetrics.Phase.PARSE);
+        final GenomeAssemblyInput input = GenomeAssemblyInput.readFromFile(new File(args[0]));
+        finder.endPhase(AssemblyMetrics.Phase.PARSE);
+
+        if (parallel)
+            finder.setExecutor(ForkJoinPool.commonPool());
+        finder.setExactOverlapStage(exactOverlaps);
+        final AlignmentCache cache = cached ? new AlignmentCache() : null;
+        finder.setAlignmentCache(cache);
+        NucleotideSequence result = overlapGraph ? finder.assembleGenomeByOverlapGraph(input) : finder
+                .assembleGenome(input);
 
         System.err.println((System.currentTimeMillis() - startTime) / 1000 + " s runtime");
+        if (cache != null && metricsFile != null)
+            System.err.println(cache);
 
         if (input.getOriginalSequence() == null) {
             System.out.println(result);
         } else {
+            finder.metrics.startPhase(AssemblyMetrics.Phase.EVALUATION);
             final AlignmentProblem problem = new OverlapAlignmentProblem(input.getOriginalSequence(), result, 1, -1, -1);
-            System.out.println(problem.compute());
+            if (parallel)
+                problem.setWavefrontPool(ForkJoinPool.commonPool());
+            final AlignmentResult evaluation = problem.compute();
+            finder.metrics.recordAlignment((long) input.getOriginalSequence().length() * result.length());
+            finder.endPhase(AssemblyMetrics.Phase.EVALUATION);
+            System.out.println(evaluation);
+        }
+
+        if (metricsFile != null) {
+            System.err.println(finder.metrics);
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(metricsFile), StandardCharsets.UTF_8)) {
+                writer.write(finder.metrics.toJson());
+                writer.write('\n');
+            }
         }
     }
 
@@ -60,6 +204,141 @@ public class SuperstringFinder
         this.strategy = strategy;
     }
 
+    /**
+     * Compute the alignments of the candidate reads only in a band around the diagonal on which the read shares most
+     * k-mers with the consensus sequence (see {@link BandedOverlapAlignmentProblem}). The read which is finally merged
+     * is always aligned in full.
+     * 
+     * @param seedLength Length of the k-mers used to find the band.
+     * @param bandWidth Width of the band, 0 to compute the whole DP tables.
+     */
+    public void setBandedAlignment(int seedLength, int bandWidth)
+    {
+        this.seedLength = seedLength;
+        this.bandWidth = bandWidth;
+    }
+
+    /**
+     * Align the candidate reads to the consensus sequence concurrently on the given executor.
+     * <p>
+     * All remaining reads are aligned in every iteration, and the read to merge is chosen the same way as in the
+     * sequential mode (the first contained read in the order of the strategy, or else the first read with the best
+     * score), so the result doesn't depend on the executor.
+     * 
+     * @param executor The executor, <code>null</code> to align the reads one by one.
+     */
+    public void setExecutor(ExecutorService executor)
+    {
+        this.executor = executor;
+    }
+
+    /**
+     * Align the candidate reads only to the prefix and suffix windows of the consensus sequence, which are longer than
+     * the longest read by the given slack, so that the cost of a candidate doesn't grow with the consensus.
+     * <p>
+     * The reads contained in the consensus are found by {@link BitParallelMatcher} in the whole consensus and verified by
+     * an alignment to a window around the found match. The read which is finally merged is still aligned to the whole
+     * consensus.
+     * 
+     * @param slack The number of characters by which the windows are longer than the longest read. Negative to align
+     *            the candidates to the whole consensus.
+     */
+    public void setEndWindow(int slack)
+    {
+        this.endWindowSlack = slack;
+    }
+
+    /**
+     * Align only the candidate reads which share at least the given number of minimizers with the consensus sequence
+     * (see {@link MinimizerIndex}). If no remaining read is such, all of them are aligned.
+     * 
+     * @param w Number of consecutive k-mers from which one minimizer is chosen. 0 to align all the remaining reads.
+     * @param k Length of the k-mers.
+     * @param minShared The minimum number of shared minimizers.
+     */
+    public void setMinimizerIndex(int w, int k, int minShared)
+    {
+        this.minimizerWindow = w;
+        this.minimizerLength = k;
+        this.minSharedMinimizers = minShared;
+    }
+
+    /**
+     * Cache the scores of the candidate alignments, so that a read isn't aligned again to the same consensus (or the
+     * same end window of the consensus, see {@link #setEndWindow(int)}). The banded alignments aren't cached.
+     * 
+     * @param alignmentCache The cache, <code>null</code> to align the candidates every time.
+     */
+    public void setAlignmentCache(AlignmentCache alignmentCache)
+    {
+        this.alignmentCache = alignmentCache;
+    }
+
+    /**
+     * Remove the exact duplicates and the reads exactly contained in other reads (see {@link RedundantReadFilter})
+     * before the assembly, so that the alignments only handle the reads which differ from the others. The pre-pass
+     * runs on the executor set by {@link #setExecutor(ExecutorService)}. In
+     * {@link #assembleGenomeByOverlapGraph(GenomeAssemblyInput)}, also the exact suffix-prefix overlaps are found by the
+     * index and the pairs of reads having them aren't aligned.
+     * 
+     * @param exactOverlapStage Whether to find the exact containments and overlaps first.
+     */
+    public void setExactOverlapStage(boolean exactOverlapStage)
+    {
+        this.exactOverlapStage = exactOverlapStage;
+    }
+
+    /**
+     * Set the minimum score of the overlap of an offered read with the consensus sequence for the read to be merged
+     * before {@link #finish()} (see {@link #offer(NucleotideSequence)}). The reads overlapping the partial consensus
+     * less are kept until a better overlapping read has been merged, so that they aren't just concatenated to it.
+     * 
+     * @param minScore The minimum overlap score.
+     */
+    public void setStreamingMinOverlapScore(int minScore)
+    {
+        this.streamingMinScore = minScore;
+    }
+
+    /**
+     * @return The metrics of the assemblies. They are accumulated over all the assemblies performed by the finder
+     *         until replaced by {@link #setMetrics(AssemblyMetrics)}.
+     */
+    public AssemblyMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+    /**
+     * @param metrics The metrics to record the following assemblies to.
+     */
+    public void setMetrics(AssemblyMetrics metrics)
+    {
+        if (metrics == null)
+            throw new IllegalArgumentException("The metrics can't be null.");
+
+        this.metrics = metrics;
+    }
+
+    /**
+     * Set the listener of the progress of the assemblies. It is notified of every completed phase, and at most once per
+     * the given interval of the number of the reads remaining to merge. It is called on the thread performing the
+     * assembly.
+     * 
+     * @param listener The listener, <code>null</code> not to report the progress.
+     * @param minIntervalMillis The minimum interval between two reports of the remaining reads in milliseconds, 0 to
+     *            report every merged read.
+     */
+    public void setProgressListener(AssemblyProgressListener listener, long minIntervalMillis)
+    {
+        if (minIntervalMillis < 0)
+            throw new IllegalArgumentException("The interval can't be negative.");
+
+        this.progressListener = listener;
+        this.progressInterval = minIntervalMillis * 1000000L;
+        this.lastProgressTime = 0;
+    }
+
     /**
      * Perform genome assembly on the given input.
      * 
@@ -67,30 +346,35 @@ public class SuperstringFinder
      * 
      * @return The assembled genome.
      */
-    public List<Character> assembleGenome(GenomeAssemblyInput input)
+    public NucleotideSequence assembleGenome(GenomeAssemblyInput input)
     {
-        final List<GenomeRead> reads = new ArrayList<>();
-        for (List<Character> read : input.getReads()) {
-            reads.add(new GenomeRead(read));
+        metrics.startPhase(AssemblyMetrics.Phase.INIT);
+        List<GenomeRead> reads = createReads(input);
+        if (exactOverlapStage) {
+            final RedundantReadFilter filter = new RedundantReadFilter(executor);
+            reads = filter.filter(reads);
+            metrics.recordRedundantReads(filter.getDuplicateCount(), filter.getContainedCount());
         }
-        strategy.init(reads);
+        minimizerIndex = (minimizerWindow > 0) ? new MinimizerIndex(reads, minimizerWindow, minimizerLength) : null;
+        initStrategy(reads);
+        iteration = 0;
+        endPhase(AssemblyMetrics.Phase.INIT);
 
-        System.err.println("Init completed.");
+        metrics.startPhase(AssemblyMetrics.Phase.PRE_CLEAN);
 
         final GenomeRead firstRead = strategy.getFirstRead();
-        final List<Character> result = new LinkedList<>(firstRead.getRead());
+        final NucleotideSequence result = new NucleotideSequence(firstRead.getRead());
         strategy.readUsed(firstRead);
 
         // merge all subsequences of the initial sequence
         {
             final List<GenomeRead> readsUsed = new LinkedList<>();
-            for (GenomeRead read : strategy.getRemainingReads()) {
-                final AlignmentProblem overlapProblem = new OverlapAlignmentProblem(result, read.getRead(), 1, -1, -1);
-                final AlignmentResult overlapResult = overlapProblem.compute();
-                if (overlapResult.doesSeq1ContainSeq2()
-                        && overlapResult.getScore() > overlapResult.getSeq2().size() * MIN_SUBSTRING_SIMILARITY) {
-                    overlapResult.mergeSeq2ToSeq1();
+            for (GenomeRead read : restrictCandidates(result, strategy.getRemainingReads())) {
+                // merging a contained read doesn't change the consensus, so the score is all we need
+                final AlignmentScore score = scoreContainment(result, read);
+                if (score != null && isSubstringOfConsensus(score, read)) {
                     readsUsed.add(read);
+                    metrics.recordContainmentHit();
                 }
             }
             // separated to avoid ConcurrentModificationException
@@ -98,41 +382,565 @@ public class SuperstringFinder
                 strategy.readUsed(read);
             }
         }
+        endPhase(AssemblyMetrics.Phase.PRE_CLEAN);
 
-        System.err.println("Pre-clean completed.");
+        metrics.startPhase(AssemblyMetrics.Phase.GREEDY_LOOP);
+        mergeRemainingReads(result);
+        endPhase(AssemblyMetrics.Phase.GREEDY_LOOP);
+        return result;
+    }
 
-        int i = 0;
-        outer: while (strategy.hasMoreReads()) {
-            AlignmentResult maxResult = null;
-            GenomeRead maxRead = null;
-            for (GenomeRead read : strategy.getRemainingReads()) {
-                final AlignmentProblem overlapProblem = new OverlapAlignmentProblem(result, read.getRead(), 1, -1, -1);
-                final AlignmentResult overlapResult = overlapProblem.compute();
-                if (overlapResult.doesSeq1ContainSeq2()
-                        && overlapResult.getScore() > overlapResult.getSeq2().size() * MIN_SUBSTRING_SIMILARITY) {
-                    overlapResult.mergeSeq2ToSeq1();
-                    strategy.readUsed(read);
-                    continue outer; // without this, a ConcurrentModificationException could be thrown
-                } else if (maxResult == null || overlapResult.getScore() > maxResult.getScore()) {
-                    maxResult = overlapResult;
-                    maxRead = read;
-                }
-            }
+    /**
+     * Add a read to the genome assembled from a stream of reads.
+     * <p>
+     * The first offered read is the base of the consensus sequence. The reads contained in the consensus are dropped
+     * and the reads overlapping it with at least the score set by {@link #setStreamingMinOverlapScore(int)} are merged
+     * immediately (on the calling thread, the candidates are aligned on the executor set by
+     * {@link #setExecutor(ExecutorService)}). The other reads wait until a merge makes them overlap the consensus well
+     * enough, or until {@link #finish()}. The strategy has to support {@link GenomeAssemblyStrategy#addRead(GenomeRead)}
+     * and the exact overlap stage isn't used.
+     * <p>
+     * The work done by the calls is recorded to the metrics as a part of the greedy loop phase, but the listener is
+     * only notified of its completion by {@link #finish()}.
+     * 
+     * @param read The read.
+     */
+    public synchronized void offer(NucleotideSequence read)
+    {
+        final GenomeRead genomeRead = new GenomeRead(read);
+
+        if (streamedConsensus == null) {
+            final List<GenomeRead> reads = new ArrayList<>();
+            reads.add(genomeRead);
+            maxReadLength = read.length();
+            minimizerIndex = (minimizerWindow > 0) ? new MinimizerIndex(reads, minimizerWindow, minimizerLength)
+                    : null;
+            initStrategy(reads);
+            iteration = 0;
+            streamedConsensus = new NucleotideSequence(read);
+            strategy.readUsed(genomeRead);
+            return;
+        }
+
+        metrics.startPhase(AssemblyMetrics.Phase.GREEDY_LOOP);
+        try {
+            maxReadLength = Math.max(maxReadLength, read.length());
+            if (minimizerIndex != null)
+                minimizerIndex.add(genomeRead);
+            strategy.addRead(genomeRead);
 
-            if (maxResult != null && maxRead != null) {
-                maxResult.mergeSeq2ToSeq1();
-                strategy.readUsed(maxRead);
+            // none of the other remaining reads could be merged to the consensus, so only the new one has to be
+            // aligned (the consensus doesn't change if the read is just dropped as a contained one)
+            final int length = streamedConsensus.length();
+            if (!mergeBest(streamedConsensus, Collections.singletonList(genomeRead), streamingMinScore)
+                    || streamedConsensus.length() == length)
+                return;
+
+            // the merged read may make the other remaining reads overlap the consensus enough
+            while (strategy.hasMoreReads() && mergeNext(streamedConsensus, streamingMinScore)) {
             }
+        } finally {
+            metrics.endPhase(AssemblyMetrics.Phase.GREEDY_LOOP);
+        }
+    }
+
+    /**
+     * Return a copy of the consensus sequence assembled from the reads offered so far (see
+     * {@link #offer(NucleotideSequence)}).
+     * 
+     * @return The partial consensus sequence, empty if no read has been offered.
+     */
+    public synchronized NucleotideSequence currentConsensus()
+    {
+        return (streamedConsensus == null) ? new NucleotideSequence() : new NucleotideSequence(streamedConsensus);
+    }
+
+    /**
+     * Merge all the waiting offered reads (see {@link #offer(NucleotideSequence)}) the same way
+     * {@link #assembleGenome(GenomeAssemblyInput)} does, and end the stream. The next offered read starts a new one.
+     * 
+     * @return The assembled genome, empty if no read has been offered.
+     */
+    public synchronized NucleotideSequence finish()
+    {
+        if (streamedConsensus == null)
+            return new NucleotideSequence();
+
+        final NucleotideSequence result = streamedConsensus;
+        metrics.startPhase(AssemblyMetrics.Phase.GREEDY_LOOP);
+        mergeRemainingReads(result);
+        endPhase(AssemblyMetrics.Phase.GREEDY_LOOP);
+        streamedConsensus = null;
+        return result;
+    }
+
+    /**
+     * Merge the remaining reads of the strategy to the consensus sequence one by one.
+     * 
+     * @param result The consensus sequence. Will be updated.
+     */
+    private void mergeRemainingReads(NucleotideSequence result)
+    {
+        int i = 0;
+        while (strategy.hasMoreReads()) {
+            mergeNext(result, Integer.MIN_VALUE);
 
             i++;
             if (i > MAX_ITERATIONS) {
                 System.err.println("Maximum number of iterations reached");
-                return result;
+                return;
             }
+        }
+    }
 
-            System.err.println("Remaining reads to merge: " + strategy.getRemainingReads().size());
+    /**
+     * Drop a remaining read contained in the consensus sequence, or merge the remaining read best overlapping it.
+     * 
+     * @param result The consensus sequence. Will be updated.
+     * @param minScore The minimum score of the overlap of the merged read.
+     * @return False if no read has been dropped or merged, because no read is contained in the consensus and none
+     *         overlaps it with at least the minimum score.
+     */
+    private boolean mergeNext(NucleotideSequence result, int minScore)
+    {
+        final MergeEvent event = new MergeEvent();
+        event.begin();
+
+        // the strategy may choose the read to merge without aligning all the remaining reads
+        final GenomeRead bestCandidate = strategy.getBestCandidate(result);
+        if (bestCandidate != null) {
+            iteration++;
+            final AlignmentResult alignment = new OverlapAlignmentProblem(result, bestCandidate.getRead(), 1, -1, -1)
+                    .compute();
+            metrics.recordAlignment((long) result.length() * bestCandidate.getRead().length());
+            if (alignment.getScore() < minScore) {
+                commitMergeEvent(event, result, bestCandidate, alignment.getScore(), 0, MergeEvent.OUTCOME_REJECTED);
+                return false;
+            }
+            alignment.mergeSeq2ToSeq1();
+            strategy.readUsed(bestCandidate);
+            readMerged(result);
+            commitMergeEvent(event, result, bestCandidate, alignment.getScore(), 0, MergeEvent.OUTCOME_MERGED);
+            return true;
         }
 
+        List<GenomeRead> remainingReads = restrictCandidates(result, strategy.getRemainingReads());
+        if (remainingReads.isEmpty())
+            remainingReads = strategy.getRemainingReads();
+        return mergeBest(result, remainingReads, minScore);
+    }
+
+    /**
+     * Drop the first of the candidate reads contained in the consensus sequence, or merge the candidate best
+     * overlapping it.
+     * 
+     * @param result The consensus sequence. Will be updated.
+     * @param remainingReads The candidate reads, some of the remaining reads of the strategy.
+     * @param minScore The minimum score of the overlap of the merged read.
+     * @return False if no read has been dropped or merged.
+     */
+    private boolean mergeBest(NucleotideSequence result, List<GenomeRead> remainingReads, int minScore)
+    {
+        final MergeEvent event = new MergeEvent();
+        event.begin();
+        iteration++;
+
+        // look for the first contained read only among the reads passing the prefilter, so that the iterations
+        // which just drop a contained read don't have to align all of the remaining reads
+        // the concurrent mode aligns all the reads and then makes the same choice as the sequential one
+        final AlignmentScore[] scores;
+        int r = 0;
+        if (executor != null) {
+            scores = scoreConcurrently(result, remainingReads, null);
+            for (GenomeRead read : remainingReads) {
+                if (scores[r] != null && isSubstringOfConsensus(scores[r], read)) {
+                    strategy.readUsed(read);
+                    metrics.recordContainmentHit();
+                    commitMergeEvent(event, result, read, scores[r].getScore(), scores.length,
+                            MergeEvent.OUTCOME_CONTAINED);
+                    return true;
+                }
+                r++;
+            }
+        } else {
+            scores = new AlignmentScore[remainingReads.size()];
+            for (GenomeRead read : remainingReads) {
+                scores[r] = scoreContainment(result, read);
+                if (scores[r] != null && isSubstringOfConsensus(scores[r], read)) {
+                    strategy.readUsed(read);
+                    metrics.recordContainmentHit();
+                    commitMergeEvent(event, result, read, scores[r].getScore(), r + 1, MergeEvent.OUTCOME_CONTAINED);
+                    return true; // without this, a ConcurrentModificationException could be thrown
+                }
+                r++;
+            }
+        }
+
+        final AlignmentScore[] overlapScores = (executor != null) ? scoreConcurrently(result, remainingReads,
+                scores) : null;
+
+        AlignmentScore maxScore = null;
+        GenomeRead maxRead = null;
+        r = 0;
+        for (GenomeRead read : remainingReads) {
+            final AlignmentScore overlapScore = (overlapScores != null) ? overlapScores[r] : scoreOverlap(result,
+                    read, scores[r]);
+            if (maxScore == null || overlapScore.getScore() > maxScore.getScore()) {
+                maxScore = overlapScore;
+                maxRead = read;
+            }
+            r++;
+        }
+
+        if (maxScore == null || maxRead == null)
+            return false;
+        if (maxScore.getScore() < minScore) {
+            commitMergeEvent(event, result, maxRead, maxScore.getScore(), remainingReads.size(),
+                    MergeEvent.OUTCOME_REJECTED);
+            return false;
+        }
+
+        // only the winning read needs the full traceback to be merged
+        final AlignmentProblem overlapProblem = new OverlapAlignmentProblem(result, maxRead.getRead(), 1, -1, -1);
+        metrics.recordAlignment((long) result.length() * maxRead.getRead().length());
+        overlapProblem.compute().mergeSeq2ToSeq1();
+        strategy.readUsed(maxRead);
+        readMerged(result);
+        commitMergeEvent(event, result, maxRead, maxScore.getScore(), remainingReads.size(),
+                MergeEvent.OUTCOME_MERGED);
+        return true;
+    }
+
+    /**
+     * Fill and commit the event of an iteration, if it is enabled in the flight recorder.
+     * 
+     * @param event The event begun at the start of the iteration.
+     * @param consensus The consensus sequence.
+     * @param read The chosen read.
+     * @param score Score of the alignment of the chosen read.
+     * @param candidates Number of the candidate reads aligned to the consensus.
+     * @param outcome What happened to the chosen read.
+     */
+    private void commitMergeEvent(MergeEvent event, NucleotideSequence consensus, GenomeRead read, int score,
+            int candidates, String outcome)
+    {
+        event.end();
+        if (!event.shouldCommit())
+            return;
+
+        event.iteration = iteration;
+        event.candidates = candidates;
+        event.score = score;
+        event.readLength = read.getRead().length();
+        event.consensusLength = consensus.length();
+        event.outcome = outcome;
+        event.commit();
+    }
+
+    /**
+     * Initialize the strategy with the reads and pass it the metrics.
+     * 
+     * @param reads The reads.
+     */
+    private void initStrategy(List<GenomeRead> reads)
+    {
+        strategy.setMetrics(metrics);
+        strategy.init(reads);
+    }
+
+    /**
+     * Record a read merged to the consensus and report the progress if the interval since the last report has passed.
+     * 
+     * @param consensus The consensus sequence.
+     */
+    private void readMerged(NucleotideSequence consensus)
+    {
+        metrics.recordMerge();
+        if (progressListener == null)
+            return;
+
+        final long now = System.nanoTime();
+        if (lastProgressTime != 0 && now - lastProgressTime < progressInterval)
+            return;
+        lastProgressTime = now;
+        progressListener.progress(strategy.getRemainingReads().size(), consensus.length(), metrics);
+    }
+
+    /**
+     * Stop timing the phase and notify the listener of its completion.
+     * 
+     * @param phase The completed phase.
+     */
+    private void endPhase(AssemblyMetrics.Phase phase)
+    {
+        metrics.endPhase(phase);
+        if (progressListener != null)
+            progressListener.phaseCompleted(phase, metrics);
+    }
+
+    /**
+     * Perform genome assembly on the given input by the greedy walk over the graph of the overlaps of all pairs of reads
+     * (see {@link OverlapGraphAssemblyStrategy}). Only the paths of the graph are aligned to the consensus sequence, not
+     * every read.
+     * <p>
+     * The pairs of reads are aligned on the executor set by {@link #setExecutor(ExecutorService)}. The strategy given
+     * to the constructor is not used.
+     * 
+     * @param input The input to work on.
+     * 
+     * @return The assembled genome.
+     */
+    public NucleotideSequence assembleGenomeByOverlapGraph(GenomeAssemblyInput input)
+    {
+        final OverlapGraphAssemblyStrategy graphStrategy = new OverlapGraphAssemblyStrategy(executor,
+                OverlapGraphAssemblyStrategy.DEFAULT_MIN_OVERLAP_SCORE);
+        if (minimizerWindow > 0)
+            graphStrategy.setMinimizerIndex(minimizerWindow, minimizerLength, minSharedMinimizers);
+        graphStrategy.setExactOverlaps(exactOverlapStage);
+        graphStrategy.setMetrics(metrics);
+
+        metrics.startPhase(AssemblyMetrics.Phase.INIT);
+        final List<GenomeRead> reads = createReads(input);
+        endPhase(AssemblyMetrics.Phase.INIT);
+
+        // the pairs of reads are aligned and the graph is walked at once
+        metrics.startPhase(AssemblyMetrics.Phase.GREEDY_LOOP);
+        graphStrategy.init(reads);
+        endPhase(AssemblyMetrics.Phase.GREEDY_LOOP);
+
+        return graphStrategy.getSuperstring();
+    }
+
+    /**
+     * Wrap the reads of the input and find the length of the longest one.
+     * 
+     * @param input The input.
+     * @return The reads.
+     */
+    private List<GenomeRead> createReads(GenomeAssemblyInput input)
+    {
+        final List<GenomeRead> reads = new ArrayList<>();
+        maxReadLength = 0;
+        for (NucleotideSequence read : input.getReads()) {
+            reads.add(new GenomeRead(read));
+            maxReadLength = Math.max(maxReadLength, read.length());
+        }
+        return reads;
+    }
+
+    /**
+     * Select the reads sharing enough minimizers with the consensus sequence.
+     * 
+     * @param consensus The consensus sequence.
+     * @param reads The reads to select from.
+     * @return The selected reads in their original order, or all the reads if the minimizer index is not used.
+     */
+    private List<GenomeRead> restrictCandidates(NucleotideSequence consensus, List<GenomeRead> reads)
+    {
+        if (minimizerIndex == null)
+            return reads;
+
+        final Set<GenomeRead> candidates = new HashSet<>(minimizerIndex.findCandidates(consensus, minSharedMinimizers));
+        final List<GenomeRead> result = new ArrayList<>();
+        for (GenomeRead read : reads) {
+            if (candidates.contains(read))
+                result.add(read);
+        }
         return result;
     }
+
+    /**
+     * Compute the score of the alignment of a candidate read used to decide whether the read is contained in the
+     * consensus sequence.
+     * 
+     * @param consensus The consensus sequence.
+     * @param read The candidate read.
+     * @return The score, or <code>null</code> if the read surely isn't a substring of the consensus.
+     */
+    private AlignmentScore scoreContainment(NucleotideSequence consensus, GenomeRead read)
+    {
+        if (!mayBeSubstringOfConsensus(consensus, read))
+            return null;
+
+        if (endWindowSlack < 0)
+            return scoreCandidate(consensus, read);
+
+        // the match is at most twice as long as the read, otherwise it wouldn't pass mayBeSubstringOfConsensus()
+        final int length = read.getRead().length();
+        final int end = new BitParallelMatcher(read.getRead()).findBestEnd(consensus);
+        return scoreWindow(consensus, Math.max(0, end - 2 * length - endWindowSlack),
+                Math.min(consensus.length(), end + endWindowSlack), read);
+    }
+
+    /**
+     * Compute the score of the alignment of a candidate read used to choose the read to merge.
+     * 
+     * @param consensus The consensus sequence.
+     * @param read The candidate read.
+     * @param containmentScore The score computed by {@link #scoreContainment(NucleotideSequence, GenomeRead)}.
+     * @return The score.
+     */
+    private AlignmentScore scoreOverlap(NucleotideSequence consensus, GenomeRead read, AlignmentScore containmentScore)
+    {
+        final int window = maxReadLength + endWindowSlack;
+        if (endWindowSlack < 0 || consensus.length() <= window) {
+            if (endWindowSlack < 0 && containmentScore != null)
+                return containmentScore;
+            return scoreCandidate(consensus, read);
+        }
+
+        final AlignmentScore prefixScore = scoreWindow(consensus, 0, window, read);
+        final AlignmentScore suffixScore = scoreWindow(consensus, consensus.length() - window, consensus.length(),
+                read);
+        return suffixScore.getScore() > prefixScore.getScore() ? suffixScore : prefixScore;
+    }
+
+    /**
+     * Compute the scores of all the candidate reads on {@link #executor}.
+     * 
+     * @param consensus The consensus sequence.
+     * @param candidates The candidate reads.
+     * @param containmentScores <code>null</code> to compute the containment scores (see
+     *            {@link #scoreContainment(NucleotideSequence, GenomeRead)}), or the already computed containment
+     *            scores to compute the overlap scores (see
+     *            {@link #scoreOverlap(NucleotideSequence, GenomeRead, AlignmentScore)}).
+     * @return The scores of the reads (in the order of <code>candidates</code>).
+     */
+    private AlignmentScore[] scoreConcurrently(final NucleotideSequence consensus, List<GenomeRead> candidates,
+            final AlignmentScore[] containmentScores)
+    {
+        final List<Callable<AlignmentScore>> tasks = new ArrayList<>(candidates.size());
+        int r = 0;
+        for (final GenomeRead read : candidates) {
+            final int index = r++;
+            tasks.add(new Callable<AlignmentScore>() {
+                @Override
+                public AlignmentScore call()
+                {
+                    if (containmentScores == null)
+                        return scoreContainment(consensus, read);
+                    return scoreOverlap(consensus, read, containmentScores[index]);
+                }
+            });
+        }
+
+        final AlignmentScore[] scores = new AlignmentScore[tasks.size()];
+        try {
+            final List<Future<AlignmentScore>> futures = executor.invokeAll(tasks);
+            for (int i = 0; i < scores.length; i++) {
+                scores[i] = futures.get(i).get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while aligning the candidate reads.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+
+        return scores;
+    }
+
+    /**
+     * Align a candidate read to the whole consensus sequence, or take the score from {@link #alignmentCache}.
+     * 
+     * @param consensus The consensus sequence.
+     * @param read The candidate read.
+     * @return The score.
+     */
+    private AlignmentScore scoreCandidate(NucleotideSequence consensus, GenomeRead read)
+    {
+        // the banded alignments aren't cached, their scores depend on the band parameters
+        if (alignmentCache == null || bandWidth > 0) {
+            final AlignmentProblem problem = createCandidateProblem(consensus, read);
+            final AlignmentScore score = problem.computeScore();
+            // the banded problem only computes a band of the table around the seed diagonal if it has found a seed
+            final boolean banded = problem instanceof BandedOverlapAlignmentProblem
+                    && ((BandedOverlapAlignmentProblem) problem).isSeedFound();
+            metrics.recordAlignment((long) read.getRead().length()
+                    * (banded ? Math.min(consensus.length(), 2 * bandWidth + 1) : consensus.length()));
+            return score;
+        }
+        return scoreWindow(consensus, 0, consensus.length(), read);
+    }
+
+    /**
+     * Align a candidate read to a window of the consensus sequence (see {@link WindowOverlapAlignmentProblem}), or take
+     * the score from {@link #alignmentCache}.
+     * 
+     * @param consensus The consensus sequence.
+     * @param windowStart Position of the first character of the window.
+     * @param windowEnd Position after the last character of the window.
+     * @param read The candidate read.
+     * @return The score in the coordinates of the whole consensus.
+     */
+    private AlignmentScore scoreWindow(NucleotideSequence consensus, int windowStart, int windowEnd, GenomeRead read)
+    {
+        final AlignmentCache.Key key = (alignmentCache != null) ? new AlignmentCache.Key(read, consensus,
+                windowStart, windowEnd, 1, -1, -1) : null;
+
+        AlignmentScore windowScore = (key != null) ? alignmentCache.get(key) : null;
+        if (windowScore == null) {
+            windowScore = new WindowOverlapAlignmentProblem(consensus, windowStart, windowEnd, read.getRead(), 1, -1,
+                    -1).computeScore();
+            metrics.recordAlignment((long) (windowEnd - windowStart) * read.getRead().length());
+            if (key != null)
+                alignmentCache.put(key, windowScore);
+        }
+
+        return WindowOverlapAlignmentProblem.translate(windowScore, windowStart, consensus.length(), read.getRead()
+                .length());
+    }
+
+    /**
+     * Create the problem of aligning a candidate read to the consensus sequence.
+     * 
+     * @param consensus The consensus sequence.
+     * @param read The candidate read.
+     * @return The alignment problem.
+     */
+    private AlignmentProblem createCandidateProblem(NucleotideSequence consensus, GenomeRead read)
+    {
+        if (bandWidth > 0)
+            return new BandedOverlapAlignmentProblem(consensus, read.getRead(), 1, -1, -1, seedLength, bandWidth);
+        return new OverlapAlignmentProblem(consensus, read.getRead(), 1, -1, -1);
+    }
+
+    /**
+     * Cheaply decide whether the read can be a substring of the consensus sequence (see
+     * {@link #isSubstringOfConsensus(AlignmentScore, GenomeRead)}).
+     * <p>
+     * With the unit scores used for the alignments, the score of an alignment of the read is at most its length minus
+     * the edit distance of the read to the best matching part of the consensus, so the reads too distant from every part
+     * of the consensus can be rejected by {@link BitParallelMatcher} without aligning them.
+     * 
+     * @param consensus The consensus sequence.
+     * @param read The read.
+     * @return False if the read surely isn't a substring of the consensus sequence.
+     */
+    private static boolean mayBeSubstringOfConsensus(NucleotideSequence consensus, GenomeRead read)
+    {
+        final int length = read.getRead().length();
+        // the largest distance for which length - distance > length * MIN_SUBSTRING_SIMILARITY
+        final int maxDistance = length - (int) Math.floor(length * MIN_SUBSTRING_SIMILARITY) - 1;
+        if (maxDistance < 0)
+            return false;
+
+        return new BitParallelMatcher(read.getRead()).occursWithin(consensus, maxDistance);
+    }
+
+    /**
+     * Decide whether the read is contained in the consensus sequence and is similar enough to it to be treated as its
+     * substring.
+     * 
+     * @param overlapScore The score of aligning the read to the consensus sequence.
+     * @param read The read.
+     * @return True if the read is a substring of the consensus sequence.
+     */
+    private static boolean isSubstringOfConsensus(AlignmentScore overlapScore, GenomeRead read)
+    {
+        return overlapScore.doesSeq1ContainSeq2()
+                && overlapScore.getScore() > read.getRead().length() * MIN_SUBSTRING_SIMILARITY;
+    }
 }
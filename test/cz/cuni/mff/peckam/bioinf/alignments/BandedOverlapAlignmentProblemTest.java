@@ -0,0 +1,104 @@
+/**  */
+package cz.cuni.mff.peckam.bioinf.alignments;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Randomized checks of {@link BandedOverlapAlignmentProblem} against {@link ReferenceAlignment}.
+ *
+ * @author Martin Pecka
+ */
+public class BandedOverlapAlignmentProblemTest
+{
+    /** Number of random pairs of sequences per test. */
+    private static final int ITERATIONS = 300;
+
+    /**
+     * A band covering the whole table gives the same result as the full table.
+     */
+    @Test
+    public void wideBandMatchesReference()
+    {
+        final Random random = new Random(1);
+        for (int it = 0; it < ITERATIONS; it++) {
+            final String seq1 = ReferenceAlignment.randomSequence(random, 1 + random.nextInt(60));
+            final String seq2 = ReferenceAlignment.randomSequence(random, 1 + random.nextInt(60));
+            final ReferenceAlignment reference = new ReferenceAlignment(seq1, seq2, true, true);
+
+            final BandedOverlapAlignmentProblem problem = create(seq1, seq2, 1 + random.nextInt(4),
+                    seq1.length() + seq2.length());
+            final AlignmentResult result = problem.compute();
+            assertEquals(reference.getScore(), result.getScore(), seq1 + " " + seq2);
+            assertEquals(reference.getTraceback(), result.getTraceback(), seq1 + " " + seq2);
+
+            final AlignmentScore score = create(seq1, seq2, 1 + random.nextInt(4), seq1.length() + seq2.length())
+                    .computeScore();
+            assertEquals(reference.getScore(), score.getScore(), seq1 + " " + seq2);
+            assertEquals(reference.getEnd(), new Tuple<>(score.getEnd1(), score.getEnd2()), seq1 + " " + seq2);
+        }
+    }
+
+    /**
+     * A narrow band never finds a better alignment than the full table, the score-only and the traceback computation
+     * agree, and the band finds the overlap of reads with substitution errors only.
+     */
+    @Test
+    public void narrowBandFindsOverlaps()
+    {
+        final Random random = new Random(2);
+        for (int it = 0; it < ITERATIONS; it++) {
+            final String genome = ReferenceAlignment.randomSequence(random, 200);
+            final int start1 = random.nextInt(80), start2 = start1 + random.nextInt(60);
+            final String seq1 = ReferenceAlignment.substitute(random, genome.substring(start1, start1 + 100), 2);
+            final String seq2 = ReferenceAlignment.substitute(random, genome.substring(start2, start2 + 60), 2);
+            final ReferenceAlignment reference = new ReferenceAlignment(seq1, seq2, true, true);
+
+            final BandedOverlapAlignmentProblem problem = create(seq1, seq2, 8, 8);
+            assertTrue(problem.isSeedFound(), seq1 + " " + seq2);
+            final AlignmentResult result = problem.compute();
+            assertEquals(reference.getScore(), result.getScore(), seq1 + " " + seq2);
+
+            final List<Tuple<Integer>> path = result.getTraceback();
+            final AlignmentScore score = create(seq1, seq2, 8, 8).computeScore();
+            assertEquals(result.getScore(), score.getScore(), seq1 + " " + seq2);
+            assertEquals(path.get(path.size() - 1), new Tuple<>(score.getEnd1(), score.getEnd2()), seq1 + " " + seq2);
+
+            final String unrelated = ReferenceAlignment.randomSequence(random, 60);
+            final BandedOverlapAlignmentProblem banded = create(seq1, unrelated, 4, 2);
+            final int full = new ReferenceAlignment(seq1, unrelated, true, true).getScore();
+            assertTrue(banded.computeScore().getScore() <= full, seq1 + " " + unrelated);
+        }
+    }
+
+    /**
+     * Without a shared seed, the whole table is computed.
+     */
+    @Test
+    public void noSeedComputesFullTable()
+    {
+        final BandedOverlapAlignmentProblem problem = create("aaaaaaaa", "cccccccc", 3, 1);
+        assertFalse(problem.isSeedFound());
+        assertEquals(new ReferenceAlignment("aaaaaaaa", "cccccccc", true, true).getScore(), problem.computeScore()
+                .getScore());
+    }
+
+    /**
+     * @param seq1 The first sequence.
+     * @param seq2 The second sequence.
+     * @param seedLength Length of the seeds.
+     * @param bandWidth Width of the band.
+     * @return The banded alignment problem of the sequences.
+     */
+    private static BandedOverlapAlignmentProblem create(String seq1, String seq2, int seedLength, int bandWidth)
+    {
+        return new BandedOverlapAlignmentProblem(NucleotideSequence.valueOf(seq1), NucleotideSequence.valueOf(seq2), 1,
+                -1, -1, seedLength, bandWidth);
+    }
+}
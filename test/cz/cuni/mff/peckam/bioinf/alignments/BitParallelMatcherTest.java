@@ -0,0 +1,76 @@
+/**  */
+package cz.cuni.mff.peckam.bioinf.alignments;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Randomized checks of {@link BitParallelMatcher} against the brute-force edit distance.
+ *
+ * @author Martin Pecka
+ */
+public class BitParallelMatcherTest
+{
+    /**
+     * The distance, the decision and the end of the best match are the same as those of the brute force, also for the
+     * patterns spanning several words.
+     */
+    @Test
+    public void matchesBruteForce()
+    {
+        final Random random = new Random(1);
+        for (int it = 0; it < 500; it++) {
+            final String text = ReferenceAlignment.randomSequence(random, random.nextInt(300));
+            final String pattern;
+            if (random.nextBoolean() && text.length() > 0) {
+                final int start = random.nextInt(text.length());
+                final int end = start + random.nextInt(text.length() - start + 1);
+                pattern = ReferenceAlignment.substitute(random, text.substring(start, end) + "a", random.nextInt(5));
+            } else {
+                pattern = ReferenceAlignment.randomSequence(random, 1 + random.nextInt(200));
+            }
+
+            final int[] expected = bruteForce(pattern, text);
+            final BitParallelMatcher matcher = new BitParallelMatcher(NucleotideSequence.valueOf(pattern));
+            final NucleotideSequence packedText = NucleotideSequence.valueOf(text);
+            assertEquals(expected[0], matcher.minDistance(packedText), pattern + " " + text);
+            assertEquals(expected[1], matcher.findBestEnd(packedText), pattern + " " + text);
+
+            final int k = random.nextInt(pattern.length() + 1);
+            assertEquals(expected[0] <= k, matcher.occursWithin(packedText, k), pattern + " " + text + " " + k);
+        }
+    }
+
+    /**
+     * @param pattern The pattern.
+     * @param text The text.
+     * @return The edit distance of the pattern to the best matching substring of the text, and the position after the
+     *         end of the first such substring.
+     */
+    private static int[] bruteForce(String pattern, String text)
+    {
+        int[] previous = new int[pattern.length() + 1], current = new int[pattern.length() + 1];
+        for (int i = 0; i <= pattern.length(); i++)
+            previous[i] = i;
+
+        int best = previous[pattern.length()], bestEnd = 0;
+        for (int j = 1; j <= text.length(); j++) {
+            current[0] = 0;
+            for (int i = 1; i <= pattern.length(); i++) {
+                final int substitution = previous[i - 1] + (pattern.charAt(i - 1) == text.charAt(j - 1) ? 0 : 1);
+                current[i] = Math.min(substitution, Math.min(previous[i], current[i - 1]) + 1);
+            }
+            if (current[pattern.length()] < best) {
+                best = current[pattern.length()];
+                bestEnd = j;
+            }
+            final int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return new int[] { best, bestEnd };
+    }
+}
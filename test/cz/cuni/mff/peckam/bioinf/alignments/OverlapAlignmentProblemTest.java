@@ -0,0 +1,247 @@
+/**  */
+package cz.cuni.mff.peckam.bioinf.alignments;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Randomized checks of the kernels computing the overlap alignments: the score-only rows, the striped SIMD kernel, the
+ * packed traceback of the heap and off-heap tables, the linear-space traceback and the wavefront computation are all
+ * compared to {@link ReferenceAlignment} or to the sequential heap table.
+ *
+ * @author Martin Pecka
+ */
+public class OverlapAlignmentProblemTest
+{
+    /** Number of random pairs of sequences per test. */
+    private static final int    ITERATIONS = 300;
+
+    /** The sequence the related random sequences are cut from. */
+    private static final String GENOME     = ReferenceAlignment.randomSequence(new Random(0), 400);
+
+    /** The vectorized scoring setting before the test. */
+    private boolean             vectorizedScoring;
+
+    /** The linear space threshold before the test. */
+    private long                linearSpaceThreshold;
+
+    /** The off-heap linear space threshold before the test. */
+    private long                offHeapLinearSpaceThreshold;
+
+    /** The off-heap threshold before the test. */
+    private long                offHeapThreshold;
+
+    @BeforeEach
+    public void saveSettings()
+    {
+        vectorizedScoring = AlignmentProblem.isVectorizedScoring();
+        linearSpaceThreshold = AlignmentProblem.getLinearSpaceThreshold();
+        offHeapLinearSpaceThreshold = AlignmentProblem.getOffHeapLinearSpaceThreshold();
+        offHeapThreshold = DynamicProgrammingProblem.getOffHeapThreshold();
+    }
+
+    @AfterEach
+    public void restoreSettings()
+    {
+        AlignmentProblem.setVectorizedScoring(vectorizedScoring);
+        AlignmentProblem.setLinearSpaceThreshold(linearSpaceThreshold);
+        AlignmentProblem.setOffHeapLinearSpaceThreshold(offHeapLinearSpaceThreshold);
+        DynamicProgrammingProblem.setOffHeapThreshold(offHeapThreshold);
+    }
+
+    /**
+     * The packed traceback of the heap table gives the same score and path as the brute force.
+     */
+    @Test
+    public void tracebackMatchesReference()
+    {
+        final Random random = new Random(1);
+        for (int it = 0; it < ITERATIONS; it++) {
+            final String seq1 = randomRelated(random), seq2 = randomRelated(random);
+            final boolean startFree = random.nextBoolean(), endFree = random.nextBoolean();
+            final ReferenceAlignment reference = new ReferenceAlignment(seq1, seq2, startFree, endFree);
+
+            final AlignmentResult result = create(seq1, seq2, startFree, endFree).compute();
+            assertEquals(reference.getScore(), result.getScore(), seq1 + " " + seq2);
+            assertEquals(reference.getTraceback(), result.getTraceback(), seq1 + " " + seq2);
+        }
+    }
+
+    /**
+     * The score-only rows give the same score, start and end as the brute force.
+     */
+    @Test
+    public void scalarScoreMatchesReference()
+    {
+        AlignmentProblem.setVectorizedScoring(false);
+        checkScores(new Random(2));
+    }
+
+    /**
+     * The striped SIMD kernel gives the same score, start and end as the brute force.
+     */
+    @Test
+    public void stripedScoreMatchesReference()
+    {
+        assumeTrue(AlignmentProblem.isVectorizedScoringAvailable());
+        AlignmentProblem.setVectorizedScoring(true);
+        checkScores(new Random(2));
+    }
+
+    /**
+     * The linear-space traceback is an optimal path between the same start and end as the brute force.
+     */
+    @Test
+    public void linearSpacePathIsOptimal()
+    {
+        AlignmentProblem.setLinearSpaceThreshold(0);
+        AlignmentProblem.setOffHeapLinearSpaceThreshold(0);
+
+        final Random random = new Random(3);
+        for (int it = 0; it < ITERATIONS; it++) {
+            final String seq1 = randomRelated(random), seq2 = randomRelated(random);
+            final ReferenceAlignment reference = new ReferenceAlignment(seq1, seq2, true, true);
+
+            final AlignmentResult result = create(seq1, seq2, true, true).compute();
+            assertEquals(reference.getScore(), result.getScore(), seq1 + " " + seq2);
+
+            final List<Tuple<Integer>> path = result.getTraceback(), expected = reference.getTraceback();
+            assertEquals(expected.get(0), path.get(0), seq1 + " " + seq2);
+            assertEquals(expected.get(expected.size() - 1), path.get(path.size() - 1), seq1 + " " + seq2);
+            // every step of an optimal path gives the value of its item
+            for (int s = 1; s < path.size(); s++) {
+                final Tuple<Integer> from = path.get(s - 1), to = path.get(s);
+                final int di = to.elem1 - from.elem1, dj = to.elem2 - from.elem2;
+                final int step;
+                if (di == 1 && dj == 1)
+                    step = seq1.charAt(to.elem1 - 1) == seq2.charAt(to.elem2 - 1) ? 1 : -1;
+                else if (di + dj == 1 && di >= 0 && dj >= 0)
+                    step = -1;
+                else
+                    throw new AssertionError("Invalid step from " + from + " to " + to);
+                assertEquals(reference.getValue(to.elem1, to.elem2), reference.getValue(from.elem1, from.elem2)
+                        + step, seq1 + " " + seq2);
+            }
+        }
+    }
+
+    /**
+     * The off-heap table gives the same result as the heap one.
+     */
+    @Test
+    public void offHeapTableMatchesHeapTable()
+    {
+        assumeTrue(DynamicProgrammingProblem.isOffHeapStorageAvailable());
+
+        final Random random = new Random(4);
+        for (int it = 0; it < ITERATIONS; it++) {
+            final String seq1 = randomRelated(random), seq2 = randomRelated(random);
+            final boolean startFree = random.nextBoolean(), endFree = random.nextBoolean();
+
+            DynamicProgrammingProblem.setOffHeapThreshold(Long.MAX_VALUE);
+            final AlignmentResult heap = create(seq1, seq2, startFree, endFree).compute();
+            DynamicProgrammingProblem.setOffHeapThreshold(0);
+            final AlignmentResult offHeap = create(seq1, seq2, startFree, endFree).compute();
+
+            assertEquals(heap.getScore(), offHeap.getScore(), seq1 + " " + seq2);
+            assertEquals(heap.getTraceback(), offHeap.getTraceback(), seq1 + " " + seq2);
+        }
+    }
+
+    /**
+     * The wavefront computation gives the same result as the sequential one, both on the heap and off-heap.
+     */
+    @Test
+    public void wavefrontMatchesSequential()
+    {
+        final ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            final Random random = new Random(5);
+            for (int it = 0; it < 12; it++) {
+                final int size = DynamicProgrammingProblem.WAVEFRONT_TILE_SIZE;
+                final String seq1 = ReferenceAlignment.randomSequence(random, size + random.nextInt(3 * size));
+                final String seq2 = random.nextBoolean() ? ReferenceAlignment.substitute(random, seq1,
+                        seq1.length() / 10) : ReferenceAlignment.randomSequence(random, size + random.nextInt(3 * size));
+                DynamicProgrammingProblem.setOffHeapThreshold(it % 2 == 0 ? Long.MAX_VALUE : 0);
+
+                final AlignmentResult sequential = create(seq1, seq2, true, true).compute();
+                final AlignmentProblem problem = create(seq1, seq2, true, true);
+                problem.setWavefrontPool(pool);
+                final AlignmentResult wavefront = problem.compute();
+
+                assertEquals(sequential.getScore(), wavefront.getScore());
+                assertEquals(sequential.getTraceback(), wavefront.getTraceback());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Check {@link AlignmentProblem#computeScore()} against the brute force.
+     *
+     * @param random The random generator.
+     */
+    private static void checkScores(Random random)
+    {
+        for (int it = 0; it < ITERATIONS; it++) {
+            final String seq1 = randomRelated(random), seq2 = randomRelated(random);
+            final boolean startFree = random.nextBoolean(), endFree = random.nextBoolean();
+            final ReferenceAlignment reference = new ReferenceAlignment(seq1, seq2, startFree, endFree);
+
+            final AlignmentScore score = create(seq1, seq2, startFree, endFree).computeScore();
+            final String message = seq1 + " " + seq2 + " " + startFree + " " + endFree;
+            assertEquals(reference.getScore(), score.getScore(), message);
+            assertEquals(reference.getStart(), new Tuple<>(score.getStart1(), score.getStart2()), message);
+            assertEquals(reference.getEnd(), new Tuple<>(score.getEnd1(), score.getEnd2()), message);
+        }
+    }
+
+    /**
+     * @param seq1 The first sequence.
+     * @param seq2 The second sequence.
+     * @param seq1StartFree See {@link OverlapAlignmentProblem#isSeq1StartFree()}.
+     * @param seq1EndFree See {@link OverlapAlignmentProblem#isSeq1EndFree()}.
+     * @return The overlap alignment problem of the sequences.
+     */
+    private static AlignmentProblem create(String seq1, String seq2, final boolean seq1StartFree,
+            final boolean seq1EndFree)
+    {
+        return new OverlapAlignmentProblem(NucleotideSequence.valueOf(seq1), NucleotideSequence.valueOf(seq2), 1, -1,
+                -1) {
+            @Override
+            protected boolean isSeq1StartFree()
+            {
+                return seq1StartFree;
+            }
+
+            @Override
+            protected boolean isSeq1EndFree()
+            {
+                return seq1EndFree;
+            }
+        };
+    }
+
+    /**
+     * @param random The random generator.
+     * @return A random sequence, either unrelated to the others or a part of a common sequence with a few errors.
+     */
+    private static String randomRelated(Random random)
+    {
+        final int length = 1 + random.nextInt(random.nextInt(4) == 0 ? 150 : 40);
+        if (random.nextBoolean())
+            return ReferenceAlignment.randomSequence(random, length);
+
+        final int start = random.nextInt(GENOME.length() - length);
+        return ReferenceAlignment.substitute(random, GENOME.substring(start, start + length), random.nextInt(3));
+    }
+}
@@ -0,0 +1,174 @@
+/**  */
+package cz.cuni.mff.peckam.bioinf.alignments;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Brute-force overlap alignment the kernels are checked against: the whole DP table of ints is computed by the plain
+ * recurrence of {@link OverlapAlignmentProblem} (with the same preference of equal values), and the best item and the
+ * traceback are found the same way.
+ *
+ * @author Martin Pecka
+ */
+final class ReferenceAlignment
+{
+    /** The values, indexed by <code>[i][j]</code>. */
+    private final int[][]              values;
+
+    /** The score of the alignment. */
+    private final int                  score;
+
+    /** The coordinates of the item where the traceback stops. */
+    private final Tuple<Integer>       start;
+
+    /** The coordinates of the best item. */
+    private final Tuple<Integer>       end;
+
+    /** The traceback without the item (0, 0). */
+    private final List<Tuple<Integer>> traceback;
+
+    /**
+     * Align the sequences with the match bonus 1 and the mismatch and gap penalties -1.
+     *
+     * @param seq1 The first sequence.
+     * @param seq2 The second sequence.
+     * @param seq1StartFree See {@link OverlapAlignmentProblem#isSeq1StartFree()}.
+     * @param seq1EndFree See {@link OverlapAlignmentProblem#isSeq1EndFree()}.
+     */
+    ReferenceAlignment(String seq1, String seq2, boolean seq1StartFree, boolean seq1EndFree)
+    {
+        final int width = seq1.length() + 1, height = seq2.length() + 1;
+        values = new int[width][height];
+        final int[][] directions = new int[width][height];
+
+        for (int j = 1; j < height; j++) {
+            values[0][j] = seq1StartFree ? 0 : -j;
+            directions[0][j] = DynamicProgrammingProblem.TRACEBACK_UP;
+        }
+        for (int i = 1; i < width; i++) {
+            directions[i][0] = DynamicProgrammingProblem.TRACEBACK_LEFT;
+            for (int j = 1; j < height; j++) {
+                final int diagonal = values[i - 1][j - 1] + (seq1.charAt(i - 1) == seq2.charAt(j - 1) ? 1 : -1);
+                final int left = values[i - 1][j] - 1, up = values[i][j - 1] - 1;
+                if (diagonal >= left && diagonal >= up) {
+                    values[i][j] = diagonal;
+                    directions[i][j] = DynamicProgrammingProblem.TRACEBACK_DIAGONAL;
+                } else if (left >= up) {
+                    values[i][j] = left;
+                    directions[i][j] = DynamicProgrammingProblem.TRACEBACK_LEFT;
+                } else {
+                    values[i][j] = up;
+                    directions[i][j] = DynamicProgrammingProblem.TRACEBACK_UP;
+                }
+            }
+        }
+
+        // the last column first, then the last row, only strictly better items replace the found one
+        int best = Integer.MIN_VALUE, bestI = -1, bestJ = -1;
+        for (int j = 0; j < height && seq1EndFree; j++) {
+            if (values[width - 1][j] > best) {
+                best = values[width - 1][j];
+                bestI = width - 1;
+                bestJ = j;
+            }
+        }
+        for (int i = 0; i < width; i++) {
+            if (values[i][height - 1] > best) {
+                best = values[i][height - 1];
+                bestI = i;
+                bestJ = height - 1;
+            }
+        }
+        score = best;
+        end = new Tuple<>(bestI, bestJ);
+
+        final List<Tuple<Integer>> path = new ArrayList<>();
+        int i = bestI, j = bestJ;
+        path.add(new Tuple<>(i, j));
+        while (i > 0 && j > 0 && !(i == 1 && j == 1)) {
+            final int direction = directions[i][j];
+            if (direction != DynamicProgrammingProblem.TRACEBACK_UP)
+                i--;
+            if (direction != DynamicProgrammingProblem.TRACEBACK_LEFT)
+                j--;
+            path.add(new Tuple<>(i, j));
+        }
+        start = new Tuple<>(i, j);
+        Collections.reverse(path);
+        if (i == 0 && j == 0)
+            path.remove(0);
+        traceback = path;
+    }
+
+    /**
+     * @param i The first coordinate of the item.
+     * @param j The second coordinate of the item.
+     * @return The value of the item.
+     */
+    int getValue(int i, int j)
+    {
+        return values[i][j];
+    }
+
+    /**
+     * @return The score of the alignment.
+     */
+    int getScore()
+    {
+        return score;
+    }
+
+    /**
+     * @return The coordinates of the item where the traceback stops.
+     */
+    Tuple<Integer> getStart()
+    {
+        return start;
+    }
+
+    /**
+     * @return The coordinates of the best item.
+     */
+    Tuple<Integer> getEnd()
+    {
+        return end;
+    }
+
+    /**
+     * @return The traceback without the item (0, 0).
+     */
+    List<Tuple<Integer>> getTraceback()
+    {
+        return traceback;
+    }
+
+    /**
+     * @param random The random generator.
+     * @param length Length of the sequence.
+     * @return A random sequence of a, c, g, t with an occasional n.
+     */
+    static String randomSequence(Random random, int length)
+    {
+        final StringBuilder result = new StringBuilder(length);
+        for (int i = 0; i < length; i++)
+            result.append(random.nextInt(50) == 0 ? 'n' : "acgt".charAt(random.nextInt(4)));
+        return result.toString();
+    }
+
+    /**
+     * @param random The random generator.
+     * @param sequence A sequence.
+     * @param errors Number of substitutions to make.
+     * @return The sequence with the given number of random substitutions.
+     */
+    static String substitute(Random random, String sequence, int errors)
+    {
+        final char[] result = sequence.toCharArray();
+        for (int e = 0; e < errors && result.length > 0; e++)
+            result[random.nextInt(result.length)] = "acgt".charAt(random.nextInt(4));
+        return new String(result);
+    }
+}
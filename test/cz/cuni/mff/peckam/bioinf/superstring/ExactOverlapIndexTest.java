@@ -0,0 +1,140 @@
+/**  */
+package cz.cuni.mff.peckam.bioinf.superstring;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+
+import cz.cuni.mff.peckam.bioinf.alignments.NucleotideSequence;
+
+/**
+ * Randomized checks of the containments and overlaps found by {@link ExactOverlapIndex} against comparing the reads
+ * as strings.
+ *
+ * @author Martin Pecka
+ */
+public class ExactOverlapIndexTest
+{
+    /**
+     * Reads differing only in the characters other than a, c, g and t are neither contained in nor copies of each
+     * other.
+     */
+    @Test
+    public void otherCharactersAreCompared()
+    {
+        final List<String> reads = Arrays.asList("anna", "cannac", "axya", "caxyac");
+        assertArrayEquals(new boolean[] { true, false, true, false }, new ExactOverlapIndex(createReads(reads))
+                .findContainedReads());
+    }
+
+    /**
+     * The contained reads are the same as those found by comparing the strings, also when searched for concurrently.
+     */
+    @Test
+    public void containedReadsMatchBruteForce()
+    {
+        final Random random = new Random(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int it = 0; it < 200; it++) {
+                final List<String> reads = randomReads(random);
+                final ExactOverlapIndex index = new ExactOverlapIndex(createReads(reads));
+
+                final boolean[] expected = new boolean[reads.size()];
+                for (int r = 0; r < reads.size(); r++) {
+                    for (int o = 0; o < reads.size() && !expected[r] && !reads.get(r).isEmpty(); o++) {
+                        final String read = reads.get(r), other = reads.get(o);
+                        expected[r] = o != r && other.contains(read) && (other.length() > read.length() || o < r);
+                    }
+                }
+
+                assertArrayEquals(expected, index.findContainedReads(), reads.toString());
+                assertArrayEquals(expected, index.findContainedReads(executor), reads.toString());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * The longest suffix-prefix overlaps are the same as those found by comparing the strings.
+     */
+    @Test
+    public void overlapsMatchBruteForce()
+    {
+        final Random random = new Random(2);
+        for (int it = 0; it < 200; it++) {
+            final List<String> reads = randomReads(random);
+            final int minLength = 1 + random.nextInt(4);
+            final boolean[] skipped = new boolean[reads.size()];
+            for (int r = 0; r < reads.size(); r++)
+                skipped[r] = random.nextInt(5) == 0;
+
+            final TreeSet<String> expected = new TreeSet<>();
+            for (int from = 0; from < reads.size(); from++) {
+                for (int to = 0; to < reads.size(); to++) {
+                    final String first = reads.get(from), second = reads.get(to);
+                    if (from == to || skipped[from] || skipped[to])
+                        continue;
+                    for (int length = Math.min(first.length(), second.length()) - 1; length >= minLength; length--) {
+                        if (first.endsWith(second.substring(0, length))) {
+                            expected.add(from + "->" + to + ":" + length);
+                            break;
+                        }
+                    }
+                }
+            }
+
+            final OverlapGraph graph = new ExactOverlapIndex(createReads(reads)).findOverlaps(minLength, skipped);
+            final TreeSet<String> actual = new TreeSet<>();
+            for (int e = 0; e < graph.size(); e++) {
+                assertEquals(graph.getScore(e), graph.getCovered(e));
+                actual.add(graph.getFrom(e) + "->" + graph.getTo(e) + ":" + graph.getScore(e));
+            }
+            assertEquals(expected, actual, reads.toString());
+        }
+    }
+
+    /**
+     * @param random The random generator.
+     * @return Random reads cut from a short random sequence with occasional other characters, so that many of them
+     *         overlap, contain each other or are equal.
+     */
+    private static List<String> randomReads(Random random)
+    {
+        final StringBuilder genome = new StringBuilder();
+        for (int i = 0; i < 60; i++)
+            genome.append(random.nextInt(15) == 0 ? "nxy".charAt(random.nextInt(3)) : "acgt".charAt(random.nextInt(
+                    random.nextBoolean() ? 2 : 4)));
+
+        final List<String> result = new ArrayList<>();
+        final int count = 1 + random.nextInt(12);
+        for (int r = 0; r < count; r++) {
+            final int start = random.nextInt(genome.length());
+            final int end = Math.min(genome.length(), start + random.nextInt(20));
+            result.add(genome.substring(start, end));
+        }
+        return result;
+    }
+
+    /**
+     * @param reads The reads as strings.
+     * @return The reads.
+     */
+    private static List<GenomeRead> createReads(List<String> reads)
+    {
+        final List<GenomeRead> result = new ArrayList<>(reads.size());
+        for (String read : reads)
+            result.add(new GenomeRead(NucleotideSequence.valueOf(read)));
+        return result;
+    }
+}
@@ -0,0 +1,62 @@
+/**  */
+package cz.cuni.mff.peckam.bioinf.superstring;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+import cz.cuni.mff.peckam.bioinf.alignments.NucleotideSequence;
+
+/**
+ * Checks of the genomes assembled by {@link OverlapGraphAssemblyStrategy} from the bundled inputs.
+ *
+ * @author Martin Pecka
+ */
+public class OverlapGraphAssemblyStrategyTest
+{
+    /**
+     * The 100-base genome is assembled to about its length, with and without the exact overlaps.
+     *
+     * @throws IOException If the input can't be read.
+     */
+    @Test
+    public void assemblesTest1ToGenomeLength() throws IOException
+    {
+        checkLength("resources/test1.txt", false);
+        checkLength("resources/test1.txt", true);
+    }
+
+    /**
+     * The 1000-base genome is assembled to about its length.
+     *
+     * @throws IOException If the input can't be read.
+     */
+    @Test
+    public void assemblesTest2ToGenomeLength() throws IOException
+    {
+        checkLength("resources/test2.txt", false);
+    }
+
+    /**
+     * Assemble the input by the overlap graph and check that the result is at most 20 % shorter or longer than the
+     * original sequence.
+     *
+     * @param file The input file.
+     * @param exactOverlaps Whether the exact overlaps are found first.
+     * @throws IOException If the input can't be read.
+     */
+    private static void checkLength(String file, boolean exactOverlaps) throws IOException
+    {
+        final GenomeAssemblyInput input = GenomeAssemblyInput.readFromFile(new File(file));
+        final SuperstringFinder finder = new SuperstringFinder(new SimpleGenomeAssemblyStrategy());
+        finder.setExactOverlapStage(exactOverlaps);
+        final NucleotideSequence result = finder.assembleGenomeByOverlapGraph(input);
+
+        final int genomeLength = input.getOriginalSequence().length();
+        assertTrue(Math.abs(result.length() - genomeLength) <= genomeLength / 5, file + " assembled to "
+                + result.length() + " characters instead of " + genomeLength);
+    }
+}
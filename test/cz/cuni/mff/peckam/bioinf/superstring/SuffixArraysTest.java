@@ -0,0 +1,64 @@
+/**  */
+package cz.cuni.mff.peckam.bioinf.superstring;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Randomized checks of {@link SuffixArrays} against sorting the suffixes.
+ *
+ * @author Martin Pecka
+ */
+public class SuffixArraysTest
+{
+    /**
+     * The suffix arrays of random texts over small and large alphabets, including repetitive ones which make SA-IS
+     * recurse, are the same as the sorted suffixes.
+     */
+    @Test
+    public void matchesSortedSuffixes()
+    {
+        final Random random = new Random(1);
+        for (int it = 0; it < 500; it++) {
+            final int alphabetSize = 2 + random.nextInt(it % 2 == 0 ? 2 : 20);
+            final int[] text = new int[1 + random.nextInt(400)];
+            final int period = 1 + random.nextInt(8);
+            for (int i = 0; i < text.length - 1; i++) {
+                // the periodic texts have many equal LMS substrings
+                text[i] = (random.nextInt(4) == 0 || i < period) ? 1 + random.nextInt(alphabetSize - 1)
+                        : text[i - period];
+            }
+            text[text.length - 1] = 0;
+
+            assertArrayEquals(sortSuffixes(text), SuffixArrays.build(text, alphabetSize), Arrays.toString(text));
+        }
+    }
+
+    /**
+     * @param text The text.
+     * @return The starting positions of the suffixes of the text in their lexicographic order.
+     */
+    private static int[] sortSuffixes(final int[] text)
+    {
+        final Integer[] suffixes = new Integer[text.length];
+        for (int i = 0; i < text.length; i++)
+            suffixes[i] = i;
+        Arrays.sort(suffixes, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2)
+            {
+                return Arrays.compare(text, o1, text.length, text, o2, text.length);
+            }
+        });
+
+        final int[] result = new int[text.length];
+        for (int i = 0; i < text.length; i++)
+            result[i] = suffixes[i];
+        return result;
+    }
+}